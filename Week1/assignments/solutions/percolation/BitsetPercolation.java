@@ -0,0 +1,372 @@
+/******************************************************************************
+ *  Compilation:  javac BitsetPercolation.java
+ *  Execution:    java BitsetPercolation
+ *  Dependencies: PercolationModel.java
+ *
+ *  The BitsetPercolation class is a percolation backend with the same API
+ *  as Percolation that stores openness as one bit per site in a long[]
+ *  bitset, 8 times less than a boolean[][] grid.
+ *
+ *  The grid is padded with a ring of sentinel sites that are always
+ *  blocked, so site (row, col) has the padded index row * (n + 2) + col and
+ *  every real site has four neighbors in the bitset. open() therefore tests
+ *  the four neighbor bits without bounds checks or validation.
+ *
+ *  The union-find is a flat int[] over the padded indices, with path
+ *  halving and union by size: a root entry holds ~size, any other entry
+ *  its parent. The TOP, BOTTOM, LEFT and RIGHT status bits of a component
+ *  live in a byte[] at its root. Union-find entries of blocked sites are
+ *  never read, so reset() only clears the bitset, all n * n / 64 words of
+ *  it. A trial opens about 0.59 * n * n sites, so this is a small fraction
+ *  of its work, and cheaper than tracking the words each open touches.
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+public class BitsetPercolation implements PercolationModel {
+
+    // status bits stored at the root of a component
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+    private static final byte LEFT = 4;
+    private static final byte RIGHT = 8;
+
+    private final long[] open;
+    private final int[] sites;
+    private final byte[] status;
+    private final int gridLength;
+    private final int width;
+    private final PercolationCounters counters = new PercolationCounters();
+    private int openSiteCount = 0;
+    private boolean hasPercolated = false;
+    private boolean hasSpannedHorizontally = false;
+
+    /**
+     * Creates an n-by-n grid, with all sites initially blocked.
+     *
+     * @param n is the size of the grid
+     * @throws IllegalArgumentException if n <= 0 or the padded grid has more
+     *                                  than Integer.MAX_VALUE sites
+     */
+    public BitsetPercolation(int n) {
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("Size must be greater than 0");
+        }
+
+        if ((n + 2L) * (n + 2L) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Size " + n + " is too large for int site indices");
+        }
+
+        gridLength = n;
+        width = n + 2;
+        int paddedSize = width * width;
+        open = new long[(paddedSize + 63) >>> 6];
+        sites = new int[paddedSize];
+        status = new byte[paddedSize];
+    }
+
+    /**
+     * Blocks every site again, restoring the state of a newly created grid.
+     * Only the bitset is cleared, which costs n * n / 64 word writes rather
+     * than a pass over the union-find.
+     */
+    public void reset() {
+
+        Arrays.fill(open, 0L);
+        openSiteCount = 0;
+        hasPercolated = false;
+        hasSpannedHorizontally = false;
+    }
+
+    /**
+     * Opens the site (row, col) if it is not open already
+     *
+     * @param row and col are the coordinates of the site
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public void open(int row, int col) {
+
+        validate(row, col);
+
+        if (PercolationCounters.ENABLED) {
+            counters.opens++;
+        }
+
+        if (isOpenSite(row * width + col)) {
+            if (PercolationCounters.ENABLED) {
+                counters.redundantOpens++;
+            }
+            return;
+        }
+
+        openBlocked(row, col);
+    }
+
+    /**
+     * Opens a site known to be blocked and in bounds, skipping validation.
+     *
+     * @param site is the 1D coordinate (row - 1) * n + (col - 1) of the site
+     */
+    public void openBlockedSite(int site) {
+
+        if (PercolationCounters.ENABLED) {
+            counters.opens++;
+        }
+
+        openBlocked(site / gridLength + 1, site % gridLength + 1);
+    }
+
+    /**
+     * Opens the blocked site (row, col) and connects it to its open
+     * neighbors. The caller guarantees the site is in bounds and blocked.
+     *
+     * @param row and col are the coordinates of the site
+     */
+    private void openBlocked(int row, int col) {
+
+        int site = row * width + col;
+        open[site >>> 6] |= 1L << site;
+        openSiteCount++;
+
+        byte siteStatus = 0;
+        if (row == 1) {
+            siteStatus |= TOP;
+        }
+        if (row == gridLength) {
+            siteStatus |= BOTTOM;
+        }
+        if (col == 1) {
+            siteStatus |= LEFT;
+        }
+        if (col == gridLength) {
+            siteStatus |= RIGHT;
+        }
+        sites[site] = ~1;
+        status[site] = siteStatus;
+
+        // the sentinel ring makes every neighbor a valid index
+        int root = site;
+        root = unionIfOpen(root, site - width);
+        root = unionIfOpen(root, site + width);
+        root = unionIfOpen(root, site - 1);
+        root = unionIfOpen(root, site + 1);
+
+        byte rootStatus = status[root];
+        if ((rootStatus & (TOP | BOTTOM)) == (TOP | BOTTOM)) {
+            hasPercolated = true;
+        }
+        if ((rootStatus & (LEFT | RIGHT)) == (LEFT | RIGHT)) {
+            hasSpannedHorizontally = true;
+        }
+    }
+
+    /**
+     * Checks if the site (row, col) is open or not.
+     *
+     * @param row and col are the coordinates of the site
+     * @return {@code true} if the site (row, col) is open;
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public boolean isOpen(int row, int col) {
+
+        validate(row, col);
+        return isOpenSite(row * width + col);
+    }
+
+    /**
+     * Checks if the site (row, col) is full or not.
+     *
+     * @param row and col are the coordinates of the site
+     * @return {@code true} if the site (row, col) is full;
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public boolean isFull(int row, int col) {
+
+        validate(row, col);
+        int site = row * width + col;
+        return isOpenSite(site) && (status[find(site)] & TOP) != 0;
+    }
+
+    /**
+     * Returns the size of the open cluster containing the site (row, col).
+     *
+     * @param row and col are the coordinates of the site
+     * @return the number of open sites connected to the site (row, col), or
+     *         0 if the site is blocked
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public int clusterSize(int row, int col) {
+
+        validate(row, col);
+        int site = row * width + col;
+        return isOpenSite(site) ? ~sites[find(site)] : 0;
+    }
+
+    /**
+     * Returns the number of open sites.
+     *
+     * @return the number of open sites
+     */
+    public int numberOfOpenSites() {
+
+        return openSiteCount;
+    }
+
+    /**
+     * Returns the work counters of this system.
+     *
+     * @return the counters, which count only with -Dpercolation.counters=true
+     */
+    public PercolationCounters counters() {
+
+        return counters;
+    }
+
+    /**
+     * Checks if the system percolates or not.
+     *
+     * @return {@code true} if the system percolates;
+     */
+    public boolean percolates() {
+
+        return hasPercolated;
+    }
+
+    /**
+     * Checks if an open cluster connects the left and right columns.
+     *
+     * @return {@code true} if the system percolates from left to right;
+     */
+    public boolean percolatesHorizontally() {
+
+        return hasSpannedHorizontally;
+    }
+
+    /**
+     * Checks the open bit of a padded site.
+     *
+     * @param site is the padded index of the site
+     * @return {@code true} if the site is open;
+     */
+    private boolean isOpenSite(int site) {
+
+        return (open[site >>> 6] & (1L << site)) != 0;
+    }
+
+    /**
+     * Unions the component rooted at root with the neighbor site, if the
+     * neighbor is open.
+     *
+     * @param root     is the root of the component of the site being opened
+     * @param neighbor is the padded index of a neighbor site
+     * @return the root of the merged component
+     */
+    private int unionIfOpen(int root, int neighbor) {
+
+        if (!isOpenSite(neighbor)) {
+            return root;
+        }
+
+        int neighborRoot = find(neighbor);
+        if (neighborRoot == root) {
+            return root;
+        }
+
+        if (PercolationCounters.ENABLED) {
+            counters.unions++;
+        }
+
+        int size = ~sites[root] + ~sites[neighborRoot];
+        byte merged = (byte) (status[root] | status[neighborRoot]);
+
+        // link the smaller component below the larger one
+        if (~sites[root] < ~sites[neighborRoot]) {
+            sites[root] = neighborRoot;
+            sites[neighborRoot] = ~size;
+            status[neighborRoot] = merged;
+            return neighborRoot;
+        }
+        sites[neighborRoot] = root;
+        sites[root] = ~size;
+        status[root] = merged;
+        return root;
+    }
+
+    /**
+     * Returns the root of the open site's component, halving the path on the
+     * way.
+     *
+     * @param site is the padded index of an open site
+     * @return the root of the site's component
+     */
+    private int find(int site) {
+
+        int steps = 0;
+        int parent;
+        while ((parent = sites[site]) >= 0) {
+            int grandparent = sites[parent];
+            if (grandparent < 0) {
+                site = parent;
+                steps++;
+                break;
+            }
+            sites[site] = grandparent;
+            site = grandparent;
+            steps += 2;
+        }
+
+        if (PercolationCounters.ENABLED) {
+            counters.finds++;
+            counters.findSteps += steps;
+        }
+        return site;
+    }
+
+    /**
+     * Validates the site's (row, col) to be within bounds.
+     *
+     * @param row and col are the coordinates of the site to be validated
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    private void validate(int row, int col) {
+
+        if (row < 1 || row > gridLength) {
+            throw new IllegalArgumentException(
+                    "index " + row + " is not between 1 and " + gridLength);
+        }
+
+        if (col < 1 || col > gridLength) {
+            throw new IllegalArgumentException(
+                    "index " + col + " is not between 1 and " + gridLength);
+        }
+    }
+
+    /**
+     * Unit tests the BitsetPercolation data type.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+
+        BitsetPercolation perc = new BitsetPercolation(3);
+        perc.open(1, 3);
+        System.out.println("Percolates? - " + perc.percolates());
+
+        perc.open(2, 3);
+        System.out.println("Percolates? - " + perc.percolates());
+
+        perc.open(3, 3);
+        System.out.println("Percolates? - " + perc.percolates());
+        System.out.println("Number of open sites - " + perc.numberOfOpenSites());
+        System.out.println("Is site (1, 3) full? - " + perc.isFull(1, 3));
+        System.out.println("Is site (2, 3) full? - " + perc.isFull(2, 3));
+        System.out.println("Is site (3, 3) full? - " + perc.isFull(3, 3));
+
+        perc.open(3, 1);
+        System.out.println("Percolates? - " + perc.percolates());
+        System.out.println("Number of open sites - " + perc.numberOfOpenSites());
+        System.out.println("Is site (3, 1) full? - " + perc.isFull(3, 1));
+    }
+}
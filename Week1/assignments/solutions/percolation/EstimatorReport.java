@@ -0,0 +1,90 @@
+/******************************************************************************
+ *  Compilation:  javac EstimatorReport.java
+ *  Execution:    java EstimatorReport n trials [threads]
+ *  Dependencies: algs4/Stopwatch.java PercolationStats.java
+ *                FlatPercolation.java
+ *
+ *  Reports the effective-sample-size gain of every PercolationStats
+ *  estimator over plain Monte Carlo, per unit of work. For the same number
+ *  of trials, the gain per trial is the ratio of the variances of the
+ *  per-trial estimates; an estimator that does more work per trial must
+ *  beat that extra work to be worth using, so the estimators are ranked by
+ *  their gain per second, i.e. how many more plain trials the same time
+ *  buys.
+ *
+ *  % java EstimatorReport 100 4000 1
+ *  estimator           stddev   seconds  gain/second  gain/trial
+ *  CONTROL_VARIATE   0.012899     1.762         1.70        1.59
+ *  PLAIN             0.016262     1.884         1.00        1.00
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.Arrays;
+
+public class EstimatorReport {
+
+    /**
+     * Runs every estimator on the same seeds and prints the gains.
+     *
+     * @param args the command-line arguments: n, trials and threads
+     */
+    public static void main(String[] args) {
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                                      : Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+
+        // warm up every estimator before timing
+        for (PercolationStats.Estimator estimator : PercolationStats.Estimator.values()) {
+            new PercolationStats(n, Math.min(trials, 100), FlatPercolation::new,
+                                 seed, threads, estimator);
+        }
+
+        int count = PercolationStats.Estimator.values().length;
+        String[] names = new String[count];
+        double[] stddevs = new double[count];
+        double[] times = new double[count];
+        double[] gainPerTrial = new double[count];
+        double[] gainPerSecond = new double[count];
+        Integer[] rank = new Integer[count];
+
+        double plainVariance = 0;
+        double plainTime = 0;
+        for (PercolationStats.Estimator estimator : PercolationStats.Estimator.values()) {
+
+            Stopwatch stopwatch = new Stopwatch();
+            PercolationStats stats = new PercolationStats(
+                    n, trials, FlatPercolation::new, seed, threads, estimator);
+            double time = stopwatch.elapsedTime();
+            double variance = stats.stddev() * stats.stddev();
+
+            if (estimator == PercolationStats.Estimator.PLAIN) {
+                plainVariance = variance;
+                plainTime = time;
+            }
+
+            int i = estimator.ordinal();
+            names[i] = estimator.name();
+            stddevs[i] = stats.stddev();
+            times[i] = time;
+            gainPerTrial[i] = plainVariance / variance;
+            gainPerSecond[i] = plainVariance * plainTime / (variance * time);
+            rank[i] = i;
+        }
+
+        // best gain per unit of work first
+        Arrays.sort(rank, (a, b) -> Double.compare(gainPerSecond[b], gainPerSecond[a]));
+
+        System.out.printf("%-15s %10s %9s %12s %11s%n",
+                          "estimator", "stddev", "seconds", "gain/second", "gain/trial");
+        for (int i : rank) {
+            System.out.printf("%-15s %10.6f %9.3f %12.2f %11.2f%n",
+                              names[i], stddevs[i], times[i],
+                              gainPerSecond[i], gainPerTrial[i]);
+        }
+    }
+}
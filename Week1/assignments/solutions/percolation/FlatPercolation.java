@@ -0,0 +1,395 @@
+/******************************************************************************
+ *  Compilation:  javac FlatPercolation.java
+ *  Execution:    java FlatPercolation
+ *  Dependencies: PercolationModel.java
+ *
+ *  The FlatPercolation class is an alternative percolation backend with the
+ *  same API as Percolation. Instead of a WeightedQuickUnionUF, a boolean[][]
+ *  grid and a backwash array, it keeps every site in a single flat int[]
+ *  union-find:
+ *
+ *    entry >= 0   the site is open and not a root; entry is its parent
+ *    entry <  0   the site is a root; ~entry packs the component size
+ *                 (upper bits) with the TOP, BOTTOM, LEFT and RIGHT status
+ *                 bits. A blocked site is a root of size 0, i.e. entry -1.
+ *
+ *  Only open sites are ever unioned, so every non-root site is open, and the
+ *  status of a component lives in its root entry. isOpen, isFull and
+ *  percolates therefore never touch a second array. find() uses path
+ *  halving and union() links the smaller component below the larger one.
+ *
+ *  Every opened site is also recorded, so that reset() only has to block
+ *  the sites opened since the last reset.
+ *
+ *  Packing the size with four status bits limits the grid to fewer than
+ *  2^27 sites (n <= 11585).
+ ******************************************************************************/
+
+public class FlatPercolation implements PercolationModel {
+
+    // status bits stored in the low bits of a root entry
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int LEFT = 4;
+    private static final int RIGHT = 8;
+    private static final int STATUS_BITS = 4;
+    private static final int STATUS_MASK = (1 << STATUS_BITS) - 1;
+
+    // a blocked site is a root of size 0 with no status bits
+    private static final int BLOCKED = ~0;
+
+    private final int[] sites;
+    private final int[] openedSites;
+    private final int gridLength;
+    private final PercolationCounters counters = new PercolationCounters();
+    private int openSiteCount = 0;
+    private boolean hasPercolated = false;
+    private boolean hasSpannedHorizontally = false;
+
+    /**
+     * Creates an n-by-n grid, with all sites initially blocked.
+     *
+     * @param n is the size of the grid
+     * @throws IllegalArgumentException if n <= 0 or n * n >= 2^27
+     */
+    public FlatPercolation(int n) {
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("Size must be greater than 0");
+        }
+
+        if ((long) n * n >= 1L << (Integer.SIZE - 1 - STATUS_BITS)) {
+            throw new IllegalArgumentException(
+                    "Size " + n + " is too large for a flat union-find");
+        }
+
+        gridLength = n;
+        sites = new int[n * n];
+        java.util.Arrays.fill(sites, BLOCKED);
+        openedSites = new int[n * n];
+    }
+
+    /**
+     * Blocks every site again, restoring the state of a newly created grid.
+     * Only the sites opened since the last reset are touched, so the cost is
+     * proportional to the number of open sites rather than to n * n.
+     */
+    public void reset() {
+
+        for (int i = 0; i < openSiteCount; i++) {
+            sites[openedSites[i]] = BLOCKED;
+        }
+        openSiteCount = 0;
+        hasPercolated = false;
+        hasSpannedHorizontally = false;
+    }
+
+    /**
+     * Opens the site (row, col) if it is not open already
+     *
+     * @param row and col are the coordinates of the site
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public void open(int row, int col) {
+
+        validate(row, col);
+
+        if (PercolationCounters.ENABLED) {
+            counters.opens++;
+        }
+
+        int site = xyTo1D(row, col);
+        if (isOpenSite(site)) {
+            if (PercolationCounters.ENABLED) {
+                counters.redundantOpens++;
+            }
+            return;
+        }
+
+        openBlocked(site, row, col);
+    }
+
+    /**
+     * Opens a site known to be blocked and in bounds, skipping validation.
+     *
+     * @param site is the 1D coordinate (row - 1) * n + (col - 1) of the site
+     */
+    public void openBlockedSite(int site) {
+
+        if (PercolationCounters.ENABLED) {
+            counters.opens++;
+        }
+
+        openBlocked(site, site / gridLength + 1, site % gridLength + 1);
+    }
+
+    /**
+     * Opens the blocked site and connects it to its open neighbors. The
+     * caller guarantees the site is in bounds and blocked.
+     *
+     * @param site is the 1D coordinate of the site
+     * @param row  is the row of the site
+     * @param col  is the column of the site
+     */
+    private void openBlocked(int site, int row, int col) {
+
+        int status = 0;
+        if (row == 1) {
+            status |= TOP;
+        }
+        if (row == gridLength) {
+            status |= BOTTOM;
+        }
+        if (col == 1) {
+            status |= LEFT;
+        }
+        if (col == gridLength) {
+            status |= RIGHT;
+        }
+        sites[site] = ~((1 << STATUS_BITS) | status);
+        openedSites[openSiteCount++] = site;
+
+        // connect the site to its open neighbors, tracking the current root
+        int root = site;
+        if (row > 1) {
+            root = unionIfOpen(root, site - gridLength);
+        }
+        if (row < gridLength) {
+            root = unionIfOpen(root, site + gridLength);
+        }
+        if (col > 1) {
+            root = unionIfOpen(root, site - 1);
+        }
+        if (col < gridLength) {
+            root = unionIfOpen(root, site + 1);
+        }
+
+        int rootStatus = ~sites[root];
+        if ((rootStatus & (TOP | BOTTOM)) == (TOP | BOTTOM)) {
+            hasPercolated = true;
+        }
+        if ((rootStatus & (LEFT | RIGHT)) == (LEFT | RIGHT)) {
+            hasSpannedHorizontally = true;
+        }
+    }
+
+    /**
+     * Checks if the site (row, col) is open or not.
+     *
+     * @param row and col are the coordinates of the site
+     * @return {@code true} if the site (row, col) is open;
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public boolean isOpen(int row, int col) {
+
+        validate(row, col);
+        return isOpenSite(xyTo1D(row, col));
+    }
+
+    /**
+     * Checks if the site (row, col) is full or not.
+     *
+     * @param row and col are the coordinates of the site
+     * @return {@code true} if the site (row, col) is full;
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public boolean isFull(int row, int col) {
+
+        validate(row, col);
+        return (~sites[find(xyTo1D(row, col))] & TOP) != 0;
+    }
+
+    /**
+     * Returns the size of the open cluster containing the site (row, col).
+     *
+     * @param row and col are the coordinates of the site
+     * @return the number of open sites connected to the site (row, col), or
+     *         0 if the site is blocked
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public int clusterSize(int row, int col) {
+
+        if (!isOpen(row, col)) {
+            return 0;
+        }
+        return ~sites[find(xyTo1D(row, col))] >>> STATUS_BITS;
+    }
+
+    /**
+     * Returns the number of open sites.
+     *
+     * @return the number of open sites
+     */
+    public int numberOfOpenSites() {
+
+        return openSiteCount;
+    }
+
+    /**
+     * Returns the work counters of this system.
+     *
+     * @return the counters, which count only with -Dpercolation.counters=true
+     */
+    public PercolationCounters counters() {
+
+        return counters;
+    }
+
+    /**
+     * Checks if the system percolates or not.
+     *
+     * @return {@code true} if the system percolates;
+     */
+    public boolean percolates() {
+
+        return hasPercolated;
+    }
+
+    /**
+     * Checks if an open cluster connects the left and right columns.
+     *
+     * @return {@code true} if the system percolates from left to right;
+     */
+    public boolean percolatesHorizontally() {
+
+        return hasSpannedHorizontally;
+    }
+
+    /**
+     * Checks if the 1D site is open. Non-root sites are always open.
+     *
+     * @param site is the 1D coordinate of the site
+     * @return {@code true} if the site is open;
+     */
+    private boolean isOpenSite(int site) {
+
+        return sites[site] != BLOCKED;
+    }
+
+    /**
+     * Unions the component rooted at root with the neighbor site, if the
+     * neighbor is open.
+     *
+     * @param root     is the root of the component of the site being opened
+     * @param neighbor is the 1D coordinate of a neighbor site
+     * @return the root of the merged component
+     */
+    private int unionIfOpen(int root, int neighbor) {
+
+        if (!isOpenSite(neighbor)) {
+            return root;
+        }
+
+        int neighborRoot = find(neighbor);
+        if (neighborRoot == root) {
+            return root;
+        }
+
+        if (PercolationCounters.ENABLED) {
+            counters.unions++;
+        }
+
+        int rootEntry = ~sites[root];
+        int neighborEntry = ~sites[neighborRoot];
+        int size = (rootEntry >>> STATUS_BITS) + (neighborEntry >>> STATUS_BITS);
+        int status = (rootEntry | neighborEntry) & STATUS_MASK;
+        int merged = ~((size << STATUS_BITS) | status);
+
+        // link the smaller component below the larger one
+        if (rootEntry < neighborEntry) {
+            sites[root] = neighborRoot;
+            sites[neighborRoot] = merged;
+            return neighborRoot;
+        }
+        sites[neighborRoot] = root;
+        sites[root] = merged;
+        return root;
+    }
+
+    /**
+     * Returns the root of the site's component, halving the path on the way.
+     *
+     * @param site is the 1D coordinate of the site
+     * @return the root of the site's component
+     */
+    private int find(int site) {
+
+        int steps = 0;
+        int parent;
+        while ((parent = sites[site]) >= 0) {
+            int grandparent = sites[parent];
+            if (grandparent < 0) {
+                site = parent;
+                steps++;
+                break;
+            }
+            sites[site] = grandparent;
+            site = grandparent;
+            steps += 2;
+        }
+
+        if (PercolationCounters.ENABLED) {
+            counters.finds++;
+            counters.findSteps += steps;
+        }
+        return site;
+    }
+
+    /**
+     * Validates the site's (row, col) to be within bounds.
+     *
+     * @param row and col are the coordinates of the site to be validated
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    private void validate(int row, int col) {
+
+        if (row < 1 || row > gridLength) {
+            throw new IllegalArgumentException(
+                    "index " + row + " is not between 1 and " + gridLength);
+        }
+
+        if (col < 1 || col > gridLength) {
+            throw new IllegalArgumentException(
+                    "index " + col + " is not between 1 and " + gridLength);
+        }
+    }
+
+    /**
+     * Converts the 2D coordinates to the 1D index into the sites array
+     *
+     * @param row of the 2D site
+     * @param col of the 2D site
+     * @return 1D coordinate
+     */
+    private int xyTo1D(int row, int col) {
+
+        return (row - 1) * gridLength + col - 1;
+    }
+
+    /**
+     * Unit tests the FlatPercolation data type.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+
+        FlatPercolation perc = new FlatPercolation(3);
+        perc.open(1, 3);
+        System.out.println("Percolates? - " + perc.percolates());
+
+        perc.open(2, 3);
+        System.out.println("Percolates? - " + perc.percolates());
+
+        perc.open(3, 3);
+        System.out.println("Percolates? - " + perc.percolates());
+        System.out.println("Number of open sites - " + perc.numberOfOpenSites());
+        System.out.println("Is site (1, 3) full? - " + perc.isFull(1, 3));
+        System.out.println("Is site (2, 3) full? - " + perc.isFull(2, 3));
+        System.out.println("Is site (3, 3) full? - " + perc.isFull(3, 3));
+
+        perc.open(3, 1);
+        System.out.println("Percolates? - " + perc.percolates());
+        System.out.println("Number of open sites - " + perc.numberOfOpenSites());
+        System.out.println("Is site (3, 1) full? - " + perc.isFull(3, 1));
+    }
+}
@@ -0,0 +1,352 @@
+/******************************************************************************
+ *  Compilation:  javac LargePercolation.java                 (JDK 22 or later)
+ *  Execution:    java LargePercolation n [scratch-file]
+ *  Dependencies: none
+ *
+ *  The LargePercolation class models a percolation system on grids too
+ *  large for Percolation: n * n may exceed Integer.MAX_VALUE, so sites are
+ *  addressed with long indices, and the union-find is kept off-heap in a
+ *  MemorySegment instead of in Java arrays. The segment is either anonymous
+ *  native memory or, for grids larger than RAM, a memory-mapped scratch file.
+ *
+ *  As in FlatPercolation, every site is one entry that packs the union-find
+ *  parent, the component size and the status bits, here in a long:
+ *
+ *    entry == 0   the site is blocked
+ *    entry >  0   the site is open and not a root; entry - 1 is its parent
+ *    entry <  0   the site is an open root; -entry packs the component size
+ *                 (upper bits) with the OPEN, TOP and BOTTOM status bits
+ *
+ *  A blocked site is all zero bits, so a new grid needs no initialization
+ *  pass: native memory is zeroed on allocation and a fresh scratch file is
+ *  sparse. The grid takes 8 * n * n bytes, e.g. 80 GB at n = 100,000.
+ *
+ *  The off-heap memory is released by close().
+ *
+ *  % java LargePercolation 2000
+ *  Percolates after opening 2373031 of 4000000 sites (p = 0.593258)
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+public class LargePercolation implements AutoCloseable {
+
+    // status bits stored in the low bits of a root entry
+    private static final long OPEN = 1;
+    private static final long TOP = 2;
+    private static final long BOTTOM = 4;
+    private static final int STATUS_BITS = 3;
+    private static final long STATUS_MASK = (1L << STATUS_BITS) - 1;
+
+    private final Arena arena;
+    private final MemorySegment sites;
+    private final int gridLength;
+    private long openSiteCount = 0;
+    private boolean hasPercolated = false;
+
+    /**
+     * Creates an n-by-n grid in native memory, with all sites initially
+     * blocked.
+     *
+     * @param n is the size of the grid
+     * @throws IllegalArgumentException if n <= 0
+     */
+    public LargePercolation(int n) {
+
+        validateSize(n);
+
+        gridLength = n;
+        arena = Arena.ofShared();
+        sites = arena.allocate(ValueLayout.JAVA_LONG.byteSize() * n * n,
+                               ValueLayout.JAVA_LONG.byteAlignment());
+    }
+
+    /**
+     * Creates an n-by-n grid memory-mapped to the given scratch file, with
+     * all sites initially blocked. Any existing content of the file is
+     * discarded.
+     *
+     * @param n           is the size of the grid
+     * @param scratchFile is the file backing the grid
+     * @throws IllegalArgumentException if n <= 0
+     * @throws UncheckedIOException if the file cannot be mapped
+     */
+    public LargePercolation(int n, Path scratchFile) {
+
+        validateSize(n);
+
+        gridLength = n;
+        arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(
+                scratchFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            sites = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                ValueLayout.JAVA_LONG.byteSize() * n * n, arena);
+        }
+        catch (IOException e) {
+            arena.close();
+            throw new UncheckedIOException("Cannot map " + scratchFile, e);
+        }
+    }
+
+    /**
+     * Opens the site (row, col) if it is not open already
+     *
+     * @param row and col are the coordinates of the site
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public void open(int row, int col) {
+
+        validate(row, col);
+
+        long site = xyTo1D(row, col);
+        if (entry(site) != 0) {
+            return;
+        }
+
+        long status = OPEN;
+        if (row == 1) {
+            status |= TOP;
+        }
+        if (row == gridLength) {
+            status |= BOTTOM;
+        }
+        setEntry(site, -((1L << STATUS_BITS) | status));
+        openSiteCount++;
+
+        // connect the site to its open neighbors, tracking the current root
+        long root = site;
+        if (row > 1) {
+            root = unionIfOpen(root, site - gridLength);
+        }
+        if (row < gridLength) {
+            root = unionIfOpen(root, site + gridLength);
+        }
+        if (col > 1) {
+            root = unionIfOpen(root, site - 1);
+        }
+        if (col < gridLength) {
+            root = unionIfOpen(root, site + 1);
+        }
+
+        if ((-entry(root) & (TOP | BOTTOM)) == (TOP | BOTTOM)) {
+            hasPercolated = true;
+        }
+    }
+
+    /**
+     * Checks if the site (row, col) is open or not.
+     *
+     * @param row and col are the coordinates of the site
+     * @return {@code true} if the site (row, col) is open;
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public boolean isOpen(int row, int col) {
+
+        validate(row, col);
+        return entry(xyTo1D(row, col)) != 0;
+    }
+
+    /**
+     * Checks if the site (row, col) is full or not.
+     *
+     * @param row and col are the coordinates of the site
+     * @return {@code true} if the site (row, col) is full;
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public boolean isFull(int row, int col) {
+
+        validate(row, col);
+        long site = xyTo1D(row, col);
+        return entry(site) != 0 && (-entry(find(site)) & TOP) != 0;
+    }
+
+    /**
+     * Returns the number of open sites.
+     *
+     * @return the number of open sites
+     */
+    public long numberOfOpenSites() {
+
+        return openSiteCount;
+    }
+
+    /**
+     * Checks if the system percolates or not.
+     *
+     * @return {@code true} if the system percolates;
+     */
+    public boolean percolates() {
+
+        return hasPercolated;
+    }
+
+    /**
+     * Releases the off-heap memory or the mapping of the scratch file. The
+     * system cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+
+        arena.close();
+    }
+
+    /**
+     * Reads the union-find entry of a site.
+     *
+     * @param site is the 1D coordinate of the site
+     * @return the entry of the site
+     */
+    private long entry(long site) {
+
+        return sites.getAtIndex(ValueLayout.JAVA_LONG, site);
+    }
+
+    /**
+     * Writes the union-find entry of a site.
+     *
+     * @param site  is the 1D coordinate of the site
+     * @param entry is the new entry of the site
+     */
+    private void setEntry(long site, long entry) {
+
+        sites.setAtIndex(ValueLayout.JAVA_LONG, site, entry);
+    }
+
+    /**
+     * Unions the component rooted at root with the neighbor site, if the
+     * neighbor is open.
+     *
+     * @param root     is the root of the component of the site being opened
+     * @param neighbor is the 1D coordinate of a neighbor site
+     * @return the root of the merged component
+     */
+    private long unionIfOpen(long root, long neighbor) {
+
+        if (entry(neighbor) == 0) {
+            return root;
+        }
+
+        long neighborRoot = find(neighbor);
+        if (neighborRoot == root) {
+            return root;
+        }
+
+        long rootEntry = -entry(root);
+        long neighborEntry = -entry(neighborRoot);
+        long size = (rootEntry >>> STATUS_BITS) + (neighborEntry >>> STATUS_BITS);
+        long status = (rootEntry | neighborEntry) & STATUS_MASK;
+        long merged = -((size << STATUS_BITS) | status);
+
+        // link the smaller component below the larger one
+        if (rootEntry < neighborEntry) {
+            setEntry(root, neighborRoot + 1);
+            setEntry(neighborRoot, merged);
+            return neighborRoot;
+        }
+        setEntry(neighborRoot, root + 1);
+        setEntry(root, merged);
+        return root;
+    }
+
+    /**
+     * Returns the root of the open site's component, halving the path on the
+     * way.
+     *
+     * @param site is the 1D coordinate of an open site
+     * @return the root of the site's component
+     */
+    private long find(long site) {
+
+        long entry;
+        while ((entry = entry(site)) > 0) {
+            long parent = entry - 1;
+            long grandparent = entry(parent);
+            if (grandparent < 0) {
+                return parent;
+            }
+            setEntry(site, grandparent);
+            site = grandparent - 1;
+        }
+        return site;
+    }
+
+    /**
+     * Validates the size of the grid.
+     *
+     * @param n is the size of the grid
+     * @throws IllegalArgumentException if n <= 0
+     */
+    private static void validateSize(int n) {
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("Size must be greater than 0");
+        }
+    }
+
+    /**
+     * Validates the site's (row, col) to be within bounds.
+     *
+     * @param row and col are the coordinates of the site to be validated
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    private void validate(int row, int col) {
+
+        if (row < 1 || row > gridLength) {
+            throw new IllegalArgumentException(
+                    "index " + row + " is not between 1 and " + gridLength);
+        }
+
+        if (col < 1 || col > gridLength) {
+            throw new IllegalArgumentException(
+                    "index " + col + " is not between 1 and " + gridLength);
+        }
+    }
+
+    /**
+     * Converts the 2D coordinates to the long 1D index into the sites segment
+     *
+     * @param row of the 2D site
+     * @param col of the 2D site
+     * @return 1D coordinate
+     */
+    private long xyTo1D(int row, int col) {
+
+        return (row - 1L) * gridLength + col - 1;
+    }
+
+    /**
+     * Opens random sites of an n-by-n grid until it percolates.
+     *
+     * @param args the command-line arguments: n and an optional scratch file
+     */
+    public static void main(String[] args) {
+
+        int n = Integer.parseInt(args[0]);
+        SplittableRandom random = new SplittableRandom();
+
+        try (LargePercolation perc = args.length > 1
+                ? new LargePercolation(n, Path.of(args[1]))
+                : new LargePercolation(n)) {
+
+            while (!perc.percolates()) {
+                perc.open(random.nextInt(1, n + 1), random.nextInt(1, n + 1));
+            }
+
+            long sites = (long) n * n;
+            System.out.printf("Percolates after opening %d of %d sites (p = %f)%n",
+                              perc.numberOfOpenSites(), sites,
+                              (double) perc.numberOfOpenSites() / sites);
+        }
+    }
+}
@@ -1,27 +1,63 @@
 /******************************************************************************
  *  Compilation:  javac Percolation.java
  *  Execution:    java Percolation n
- *  Dependencies: algs4/WeightedQuickUnionUF.java algs4/StdIn.java
- *                algs4/StdOut.java
+ *  Dependencies: algs4/StdIn.java algs4/StdOut.java PercolationModel.java
  *
  *  The Percolation class is a data type that models a percolation system.
  *  It takes n as a command-line argument and creates an n-by-n grid of sites.
- *  Based on the WeightedQuickUnionUF data type, it determines whether the
+ *  Based on a weighted quick-union data type, it determines whether the
  *  system percolates or not. It opens a site at random (if not open already),
  *  and checks if the system percolates. If it does, it prints the number of
  *  open sites.
+ *
+ *  The weighted quick-union (the same algorithm as WeightedQuickUnionUF) is
+ *  kept in the parent and size arrays of this class, and every opened site is
+ *  recorded, so that reset() only has to restore the sites opened since the
+ *  last reset instead of reallocating the whole grid.
+ *
+ *  Whole configurations are loaded with openAll() or openSites(), which
+ *  validate every site up front, mark all the new sites open in one pass and
+ *  only then union each of them with its open neighbors. The status bits of
+ *  a component are merged by link() itself, so percolation is read off the
+ *  merged root of each new site. In the other direction, fullSitesSnapshot()
+ *  and openSitesSnapshot() return the state of a band of rows as a packed
+ *  bitset in one pass.
+ *
+ *  The union-find uses union by size without path compression, so every
+ *  union changes exactly one parent entry and can be undone. After
+ *  checkpoint() every open pushes its unions on an undo log, and
+ *  rollbackTo() pops them to return to the checkpoint in time proportional
+ *  to the number of unions undone, which lets speculative searches open and
+ *  close sites incrementally instead of rebuilding the system.
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.BitSet;
+
+public class Percolation implements PercolationModel {
 
-public class Percolation {
+    // backwash bit of a site marked open by a bulk open but not connected yet
+    private static final byte UNCONNECTED = 16;
 
-    private WeightedQuickUnionUF uf;
+    private int[] parent;
+    private int[] size;
+    private int[] openedSites;
     private boolean[][] grid;
     private int openSiteCount = 0;
     private int gridLength;
     private byte[] backwash;
-    private boolean hasPercolated = false;
+    private final PercolationCounters counters = new PercolationCounters();
+
+    // number of open sites when the system first percolated vertically and
+    // horizontally, or 0 if it has not yet
+    private int percolatedAt = 0;
+    private int spannedAt = 0;
+
+    // undo log of the opens since the first checkpoint: a separator per
+    // open, then the child root and the old status of the parent root of
+    // each union it made
+    private int[] undoLog;
+    private int undoSize = 0;
+    private int checkpointFloor = -1;
 
     /**
      * Creates an n-by-n grid, with all sites initially blocked.
@@ -37,11 +73,38 @@ public class Percolation {
 
         gridLength = n;
         int gridSize = n * n;
-        uf = new WeightedQuickUnionUF(gridSize);
+        parent = new int[gridSize];
+        size = new int[gridSize];
+        for (int i = 0; i < gridSize; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+        openedSites = new int[gridSize];
         grid = new boolean[n][n];
         backwash = new byte[gridSize];
     }
 
+    /**
+     * Blocks every site again, restoring the state of a newly created grid.
+     * Only the sites opened since the last reset are touched, so the cost is
+     * proportional to the number of open sites rather than to n * n.
+     */
+    public void reset() {
+
+        for (int i = 0; i < openSiteCount; i++) {
+            int site = openedSites[i];
+            grid[site / gridLength][site % gridLength] = false;
+            parent[site] = site;
+            size[site] = 1;
+            backwash[site] = 0;
+        }
+        openSiteCount = 0;
+        percolatedAt = 0;
+        spannedAt = 0;
+        undoSize = 0;
+        checkpointFloor = -1;
+    }
+
     /**
      * Opens the site (row, col) if it is not open already
      *
@@ -53,78 +116,403 @@ public class Percolation {
         // validate the site coordinates
         validate(row, col);
 
+        if (PercolationCounters.ENABLED) {
+            counters.opens++;
+        }
+
         // return if the site is already open
         if (isOpen(row, col)) {
+            if (PercolationCounters.ENABLED) {
+                counters.redundantOpens++;
+            }
             return;
         }
 
+        openBlocked(row, col);
+    }
+
+    /**
+     * Opens a site known to be blocked and in bounds, skipping validation.
+     *
+     * @param site is the 1D coordinate (row - 1) * n + (col - 1) of the site
+     */
+    public void openBlockedSite(int site) {
+
+        if (PercolationCounters.ENABLED) {
+            counters.opens++;
+        }
+
+        openBlocked(site / gridLength + 1, site % gridLength + 1);
+    }
+
+    /**
+     * Opens the blocked site (row, col) and connects it to its open
+     * neighbors. The caller guarantees the site is in bounds and blocked.
+     *
+     * @param row and col are the coordinates of the site
+     */
+    private void openBlocked(int row, int col) {
+
         // declare the site as open
         grid[row - 1][col - 1] = true;
 
-        // increment the count of open sites
-        openSiteCount++;
+        // record the site for reset() and increment the count of open sites
         int currentSite = xyTo1D(row, col);
+        openedSites[openSiteCount++] = currentSite;
+        logOpen();
+
+        // the site starts as a component of its own, connected to the
+        // top, bottom, left and right sides it lies on
+        backwash[currentSite] = boundaryStatus(row, col);
+
+        // connect the site to its open neighbors, tracking the current root;
+        // link() merges the connection status of the components
+        int root = currentSite;
+        if (row > 1 && grid[row - 2][col - 1]) {
+            root = link(root, find(currentSite - gridLength));
+        }
+        if (row < gridLength && grid[row][col - 1]) {
+            root = link(root, find(currentSite + gridLength));
+        }
+        if (col > 1 && grid[row - 1][col - 2]) {
+            root = link(root, find(currentSite - 1));
+        }
+        if (col < gridLength && grid[row - 1][col]) {
+            root = link(root, find(currentSite + 1));
+        }
+
+        // check if the system percolates after opening the site
+        updatePercolation(backwash[root], openSiteCount);
+    }
+
+    /**
+     * Opens the sites (rows[i], cols[i]) that are not open already. Every
+     * site is validated before any is opened, so on an exception the system
+     * is unchanged.
+     *
+     * @param rows and cols are the coordinates of the sites
+     * @throws IllegalArgumentException if rows and cols differ in length or
+     *                                  a site is out of bounds
+     */
+    public void openAll(int[] rows, int[] cols) {
+
+        if (rows.length != cols.length) {
+            throw new IllegalArgumentException(
+                    rows.length + " rows but " + cols.length + " columns");
+        }
+
+        for (int i = 0; i < rows.length; i++) {
+            validate(rows[i], cols[i]);
+        }
 
-        // connect the site to the top and bottom sites if it is on the
+        int first = openSiteCount;
+        for (int i = 0; i < rows.length; i++) {
+            markOpen(rows[i], cols[i]);
+        }
+        connectOpenedSince(first);
+    }
+
+    /**
+     * Opens the sites whose bits are set in the mask, where bit
+     * (row - 1) * n + (col - 1) stands for the site (row, col). Sites that
+     * are open already stay open.
+     *
+     * @param mask is the set of sites to open
+     * @throws IllegalArgumentException if a bit beyond the last site is set
+     */
+    public void openSites(BitSet mask) {
+
+        openSites(mask.toLongArray());
+    }
+
+    /**
+     * Opens the sites whose bits are set in the mask, where bit
+     * (row - 1) * n + (col - 1) of the mask, i.e. bit k % 64 of word
+     * mask[k / 64] for site k, stands for the site (row, col). This is the
+     * layout of BitSet.toLongArray. Sites that are open already stay open.
+     *
+     * @param mask is the set of sites to open
+     * @throws IllegalArgumentException if a bit beyond the last site is set
+     */
+    public void openSites(long[] mask) {
+
+        int gridSize = gridLength * gridLength;
+        for (int word = 0; word < mask.length; word++) {
+            long beyond = word >= (gridSize + 63) >>> 6 ? mask[word]
+                        : word == gridSize >>> 6 ? mask[word] >>> (gridSize & 63)
+                        : 0;
+            if (beyond != 0) {
+                throw new IllegalArgumentException(
+                        "mask has a site beyond " + (gridSize - 1));
+            }
+        }
+
+        int first = openSiteCount;
+        for (int word = 0; word < mask.length; word++) {
+            for (long bits = mask[word]; bits != 0; bits &= bits - 1) {
+                int site = (word << 6) + Long.numberOfTrailingZeros(bits);
+                markOpen(site / gridLength + 1, site % gridLength + 1);
+            }
+        }
+        connectOpenedSince(first);
+    }
+
+    /**
+     * Marks the valid site (row, col) open without connecting it, unless it
+     * is open already.
+     *
+     * @param row and col are the coordinates of the site
+     */
+    private void markOpen(int row, int col) {
+
+        if (PercolationCounters.ENABLED) {
+            counters.opens++;
+        }
+
+        if (grid[row - 1][col - 1]) {
+            if (PercolationCounters.ENABLED) {
+                counters.redundantOpens++;
+            }
+            return;
+        }
+
+        grid[row - 1][col - 1] = true;
+        int site = xyTo1D(row, col);
+        openedSites[openSiteCount++] = site;
+
+        backwash[site] = (byte) (boundaryStatus(row, col) | UNCONNECTED);
+    }
+
+    /**
+     * Returns the connection status of a site on its own: 2 if it is on the
+     * top row, 1 on the bottom row, 4 on the left column and 8 on the right
+     * column.
+     *
+     * @param row and col are the coordinates of the site
+     * @return the connection status bits of the site
+     */
+    private byte boundaryStatus(int row, int col) {
 
         byte connStatus = 0;
         if (row == 1) {
-            // Site is on the top row
-            connStatus = 2;
+            connStatus |= 2;
+        }
+        if (row == gridLength) {
+            connStatus |= 1;
         }
-        else if (row == gridLength) {
-            // Site is on the bottom row
-            connStatus = (byte) (connStatus | 1);
+        if (col == 1) {
+            connStatus |= 4;
         }
+        if (col == gridLength) {
+            connStatus |= 8;
+        }
+        return connStatus;
+    }
 
-        // connect the site to its open neighbors
-        // Connect to top open site
-        if (row > 1 && isOpen(row - 1, col)) {
-            // get neighbor root connection status
-            connStatus = computeConnStatus(connStatus, row - 1, col);
-            uf.union(currentSite, xyTo1D(row - 1, col));
+    /**
+     * Records that the system percolates, vertically or horizontally, if the
+     * component with the given status spans it.
+     *
+     * @param connStatus is the connection status of a root
+     * @param opened     is the number of open sites when the root was merged
+     */
+    private void updatePercolation(byte connStatus, int opened) {
+
+        if ((connStatus & 3) == 3 && percolatedAt == 0) {
+            percolatedAt = opened;
         }
+        if ((connStatus & 12) == 12 && spannedAt == 0) {
+            spannedAt = opened;
+        }
+    }
 
-        // Connect to bottom open site
-        if (row < gridLength && isOpen(row + 1, col)) {
-            connStatus = computeConnStatus(connStatus, row + 1, col);
-            uf.union(currentSite, xyTo1D(row + 1, col));
+    /**
+     * Unions every site opened by markOpen since openedSites[first] with its
+     * open neighbors, updating the percolation status from the merged roots.
+     *
+     * @param first is the index in openedSites of the first new site
+     */
+    private void connectOpenedSince(int first) {
+
+        // a new site is connected to its open neighbors except the new ones
+        // not connected yet, so each edge between new sites is linked once
+        for (int i = first; i < openSiteCount; i++) {
+            int site = openedSites[i];
+            int row = site / gridLength;
+            int col = site % gridLength;
+            backwash[site] &= ~UNCONNECTED;
+            logOpen();
+
+            int root = site;
+            if (row > 0 && isConnectable(row - 1, col)) {
+                root = link(root, find(site - gridLength));
+            }
+            if (row < gridLength - 1 && isConnectable(row + 1, col)) {
+                root = link(root, find(site + gridLength));
+            }
+            if (col > 0 && isConnectable(row, col - 1)) {
+                root = link(root, find(site - 1));
+            }
+            if (col < gridLength - 1 && isConnectable(row, col + 1)) {
+                root = link(root, find(site + 1));
+            }
+
+            updatePercolation(backwash[root], i + 1);
         }
+    }
+
+    /**
+     * Checks if the 0-based site (row, col) is open and already connected to
+     * its open neighbors.
+     *
+     * @param row and col are the 0-based coordinates of the site
+     * @return {@code true} if the site is open and connected;
+     */
+    private boolean isConnectable(int row, int col) {
 
-        // Connect to left open site
-        if (col > 1 && isOpen(row, col - 1)) {
-            connStatus = computeConnStatus(connStatus, row, col - 1);
-            uf.union(currentSite, xyTo1D(row, col - 1));
+        return grid[row][col]
+                && (backwash[row * gridLength + col] & UNCONNECTED) == 0;
+    }
+
+    /**
+     * Returns the root of the site's component.
+     *
+     * @param site is the 1D coordinate of the site
+     * @return the root of the site's component
+     */
+    private int find(int site) {
+
+        int steps = 0;
+        while (site != parent[site]) {
+            site = parent[site];
+            steps++;
         }
 
-        // Connect to right open site
-        if (col < gridLength && isOpen(row, col + 1)) {
-            connStatus = computeConnStatus(connStatus, row, col + 1);
-            uf.union(currentSite, xyTo1D(row, col + 1));
+        if (PercolationCounters.ENABLED) {
+            counters.finds++;
+            counters.findSteps += steps;
         }
+        return site;
+    }
 
-        // set the connection status of the site's root to connStatus
-        backwash[uf.find(currentSite)] = connStatus;
+    /**
+     * Merges the components of two roots, linking the root of the smaller
+     * component to the root of the larger one. The merged root gets the
+     * connection status bits of both components.
+     *
+     * @param rootP is the root of one component
+     * @param rootQ is the root of the other component
+     * @return the root of the merged component
+     */
+    private int link(int rootP, int rootQ) {
 
-        // check if the system percolates after opening the site
-        if (connStatus == 3 || gridLength == 1) {
-            hasPercolated = true;
+        if (rootP == rootQ) {
+            return rootP;
+        }
+
+        if (PercolationCounters.ENABLED) {
+            counters.unions++;
+        }
+
+        if (size[rootP] < size[rootQ]) {
+            int swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+        }
+
+        if (checkpointFloor >= 0) {
+            push(rootQ);
+            push(backwash[rootP]);
+        }
+
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        backwash[rootP] |= backwash[rootQ];
+        return rootP;
+    }
+
+    /**
+     * Starts the undo log entry of an open, if a checkpoint was taken.
+     */
+    private void logOpen() {
+
+        if (checkpointFloor >= 0) {
+            push(-1);
+        }
+    }
+
+    /**
+     * Pushes a value on the undo log, doubling its capacity when full.
+     *
+     * @param value is the value to push
+     */
+    private void push(int value) {
+
+        if (undoSize == undoLog.length) {
+            int[] copy = new int[2 * undoLog.length];
+            System.arraycopy(undoLog, 0, copy, 0, undoSize);
+            undoLog = copy;
+        }
+        undoLog[undoSize++] = value;
+    }
+
+    /**
+     * Returns a marker of the current state, to which rollbackTo() can later
+     * return. Opens are logged from the first checkpoint after construction
+     * or reset() on.
+     *
+     * @return the marker of the current state
+     */
+    public int checkpoint() {
+
+        if (undoLog == null) {
+            undoLog = new int[16];
+        }
+        if (checkpointFloor < 0) {
+            checkpointFloor = openSiteCount;
         }
+        return openSiteCount;
     }
 
     /**
-     * Computes the connection status of a site with respect to its neighbor
-     * given by row and col.
+     * Blocks again every site opened since the checkpoint that returned the
+     * marker, undoing their unions in reverse order. Markers taken after that
+     * checkpoint become invalid.
      *
-     * @param connectionStatus is the current connection status of the site
-     * @param row              is the row coordinate of a neighbor site
-     * @param col              is the column coordinate of a neighbor site
-     * @return the connection status of the site
+     * @param marker is a marker returned by checkpoint()
+     * @throws IllegalArgumentException if the marker is not a checkpoint of
+     *                                  the current state or an earlier one
      */
-    private byte computeConnStatus(byte connectionStatus, int row, int col) {
+    public void rollbackTo(int marker) {
+
+        if (checkpointFloor < 0 || marker < checkpointFloor || marker > openSiteCount) {
+            throw new IllegalArgumentException(
+                    "marker " + marker + " is not a checkpoint of this system");
+        }
+
+        while (openSiteCount > marker) {
+
+            // undo the unions of the last open, newest first
+            int top;
+            while ((top = undoLog[--undoSize]) >= 0) {
+                int child = undoLog[--undoSize];
+                int root = parent[child];
+                parent[child] = child;
+                size[root] -= size[child];
+                backwash[root] = (byte) top;
+            }
+
+            int site = openedSites[--openSiteCount];
+            grid[site / gridLength][site % gridLength] = false;
+            backwash[site] = 0;
+        }
 
-        byte bwRootStatus = backwash[uf.find(xyTo1D(row, col))];
-        return (byte) (connectionStatus | bwRootStatus);
+        if (percolatedAt > marker) {
+            percolatedAt = 0;
+        }
+        if (spannedAt > marker) {
+            spannedAt = 0;
+        }
     }
 
     /**
@@ -150,8 +538,228 @@ public class Percolation {
     public boolean isFull(int row, int col) {
 
         validate(row, col);
-        int checkRoot = backwash[uf.find(xyTo1D(row, col))];
-        return checkRoot > 1;
+        int checkRoot = backwash[find(xyTo1D(row, col))];
+        return (checkRoot & 2) != 0;
+    }
+
+    /**
+     * Returns the size of the open cluster containing the site (row, col).
+     *
+     * @param row and col are the coordinates of the site
+     * @return the number of open sites connected to the site (row, col), or
+     *         0 if the site is blocked
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    public int clusterSize(int row, int col) {
+
+        if (!isOpen(row, col)) {
+            return 0;
+        }
+        return size[find(xyTo1D(row, col))];
+    }
+
+    /**
+     * Returns the full sites as a packed bitset, where bit
+     * (row - 1) * n + (col - 1) is set if the site (row, col) is full.
+     *
+     * @return the full sites, in the layout of BitSet.toLongArray
+     */
+    public long[] fullSitesSnapshot() {
+
+        return fullSitesSnapshot(1, gridLength);
+    }
+
+    /**
+     * Returns the full sites of the rows fromRow to toRow as a packed bitset,
+     * where bit (row - fromRow) * n + (col - 1) is set if the site (row, col)
+     * is full. A run of open sites in a row is one component, so it is
+     * resolved at once: from an open site above it in the band if there is
+     * one, otherwise with a single find(). At the percolation threshold this
+     * calls find() for about one site in twenty. Each row is first packed
+     * into bits, so the runs and the open sites above them are found a word
+     * at a time.
+     *
+     * @param fromRow is the first row of the band
+     * @param toRow   is the last row of the band
+     * @return the full sites of the band, in the layout of BitSet.toLongArray
+     * @throws IllegalArgumentException unless 1 <= fromRow <= toRow <= n
+     */
+    public long[] fullSitesSnapshot(int fromRow, int toRow) {
+
+        validateRows(fromRow, toRow);
+
+        long[] full = new long[bandWords(fromRow, toRow)];
+        long[] openRow = new long[(gridLength + 63) >>> 6];
+        long[] openAbove = new long[openRow.length];
+        for (int row = fromRow; row <= toRow; row++) {
+            packRow(grid[row - 1], openRow);
+            int offset = (row - fromRow) * gridLength;
+
+            int start = nextSetBit(openRow, 0);
+            while (start < gridLength) {
+                int end = nextClearBit(openRow, start);
+
+                // an open site above the run has the fullness of the run
+                int above = row > fromRow ? nextSetBit(openAbove, start) : gridLength;
+                boolean isRunFull;
+                if (above < end) {
+                    int bit = offset - gridLength + above;
+                    isRunFull = (full[bit >>> 6] & (1L << bit)) != 0;
+                }
+                else {
+                    isRunFull = (backwash[find(xyTo1D(row, start + 1))] & 2) != 0;
+                }
+                if (isRunFull) {
+                    setBits(full, offset + start, offset + end);
+                }
+
+                start = nextSetBit(openRow, end);
+            }
+
+            long[] swap = openAbove;
+            openAbove = openRow;
+            openRow = swap;
+        }
+        return full;
+    }
+
+    /**
+     * Packs a row of the grid into bits, bit col % 64 of word col / 64 being
+     * set if the 0-based column col is open.
+     *
+     * @param gridRow is the row of the grid
+     * @param bits    receives the packed row
+     */
+    private static void packRow(boolean[] gridRow, long[] bits) {
+
+        for (int word = 0; word < bits.length; word++) {
+            long packed = 0;
+            int end = Math.min(gridRow.length, (word + 1) << 6);
+            for (int col = word << 6; col < end; col++) {
+                packed |= (gridRow[col] ? 1L : 0L) << col;
+            }
+            bits[word] = packed;
+        }
+    }
+
+    /**
+     * Returns the index of the first set bit at or after from, in a row
+     * packed by packRow.
+     *
+     * @param bits is the packed row
+     * @param from is the index to start at
+     * @return the index of the next set bit, or n if there is none
+     */
+    private int nextSetBit(long[] bits, int from) {
+
+        int word = from >>> 6;
+        if (word >= bits.length) {
+            return gridLength;
+        }
+
+        long remaining = bits[word] & (-1L << from);
+        while (remaining == 0) {
+            if (++word == bits.length) {
+                return gridLength;
+            }
+            remaining = bits[word];
+        }
+        return Math.min(gridLength, (word << 6) + Long.numberOfTrailingZeros(remaining));
+    }
+
+    /**
+     * Returns the index of the first clear bit at or after from, in a row
+     * packed by packRow.
+     *
+     * @param bits is the packed row
+     * @param from is the index to start at
+     * @return the index of the next clear bit, or n if there is none
+     */
+    private int nextClearBit(long[] bits, int from) {
+
+        int word = from >>> 6;
+        long remaining = ~bits[word] & (-1L << from);
+        while (remaining == 0) {
+            if (++word == bits.length) {
+                return gridLength;
+            }
+            remaining = ~bits[word];
+        }
+        return Math.min(gridLength, (word << 6) + Long.numberOfTrailingZeros(remaining));
+    }
+
+    /**
+     * Sets the bits from to to - 1 of a packed bitset, a word at a time.
+     *
+     * @param bits is the bitset
+     * @param from is the first bit to set
+     * @param to   is one past the last bit to set
+     */
+    private static void setBits(long[] bits, int from, int to) {
+
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            bits[first] |= firstMask & lastMask;
+            return;
+        }
+
+        bits[first] |= firstMask;
+        for (int word = first + 1; word < last; word++) {
+            bits[word] = -1L;
+        }
+        bits[last] |= lastMask;
+    }
+
+    /**
+     * Returns the open sites as a packed bitset, where bit
+     * (row - 1) * n + (col - 1) is set if the site (row, col) is open.
+     *
+     * @return the open sites, in the layout of BitSet.toLongArray
+     */
+    public long[] openSitesSnapshot() {
+
+        return openSitesSnapshot(1, gridLength);
+    }
+
+    /**
+     * Returns the open sites of the rows fromRow to toRow as a packed bitset,
+     * where bit (row - fromRow) * n + (col - 1) is set if the site (row, col)
+     * is open.
+     *
+     * @param fromRow is the first row of the band
+     * @param toRow   is the last row of the band
+     * @return the open sites of the band, in the layout of BitSet.toLongArray
+     * @throws IllegalArgumentException unless 1 <= fromRow <= toRow <= n
+     */
+    public long[] openSitesSnapshot(int fromRow, int toRow) {
+
+        validateRows(fromRow, toRow);
+
+        long[] open = new long[bandWords(fromRow, toRow)];
+        for (int row = fromRow; row <= toRow; row++) {
+            boolean[] gridRow = grid[row - 1];
+            int offset = (row - fromRow) * gridLength;
+            for (int col = 0; col < gridLength; col++) {
+                int bit = offset + col;
+                open[bit >>> 6] |= (gridRow[col] ? 1L : 0L) << bit;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Returns the number of words of a packed bitset of a band of rows.
+     *
+     * @param fromRow is the first row of the band
+     * @param toRow   is the last row of the band
+     * @return the number of longs holding (toRow - fromRow + 1) * n bits
+     */
+    private int bandWords(int fromRow, int toRow) {
+
+        return ((toRow - fromRow + 1) * gridLength + 63) >>> 6;
     }
 
     /**
@@ -164,6 +772,16 @@ public class Percolation {
         return openSiteCount;
     }
 
+    /**
+     * Returns the work counters of this system.
+     *
+     * @return the counters, which count only with -Dpercolation.counters=true
+     */
+    public PercolationCounters counters() {
+
+        return counters;
+    }
+
     /**
      * Checks if the system percolates or not.
      *
@@ -171,7 +789,17 @@ public class Percolation {
      */
     public boolean percolates() {
 
-        return hasPercolated;
+        return percolatedAt > 0;
+    }
+
+    /**
+     * Checks if an open cluster connects the left and right columns.
+     *
+     * @return {@code true} if the system percolates from left to right;
+     */
+    public boolean percolatesHorizontally() {
+
+        return spannedAt > 0;
     }
 
     /**
@@ -194,7 +822,23 @@ public class Percolation {
     }
 
     /**
-     * Converts the 2D coordinates to 1D coordinate for WeightedQuickUnionUF
+     * Validates a band of rows.
+     *
+     * @param fromRow is the first row of the band
+     * @param toRow   is the last row of the band
+     * @throws IllegalArgumentException unless 1 <= fromRow <= toRow <= n
+     */
+    private void validateRows(int fromRow, int toRow) {
+
+        if (fromRow < 1 || toRow > gridLength || fromRow > toRow) {
+            throw new IllegalArgumentException(
+                    "rows " + fromRow + " to " + toRow + " are not a band of 1 to "
+                            + gridLength);
+        }
+    }
+
+    /**
+     * Converts the 2D coordinates to 1D coordinate for the union-find
      *
      * @param row of the 2D site
      * @param col of the 2D site
@@ -232,5 +876,20 @@ public class Percolation {
         System.out.println("Percolates? - " + perc.percolates());
         System.out.println("Number of open sites - " + perc.numberOfOpenSites());
         System.out.println("Is site (3, 1) full? - " + perc.isFull(3, 1));
+
+        perc.reset();
+        perc.openAll(new int[] { 1, 2, 2, 3 }, new int[] { 1, 1, 2, 2 });
+        System.out.println("Percolates after openAll? - " + perc.percolates());
+        System.out.println("Number of open sites - " + perc.numberOfOpenSites());
+
+        int marker = perc.checkpoint();
+        perc.open(3, 2);
+        perc.open(3, 3);
+        System.out.println("Spans horizontally? - " + perc.percolatesHorizontally());
+        perc.rollbackTo(marker);
+        System.out.println("Spans after rollback? - " + perc.percolatesHorizontally());
+        System.out.println("Number of open sites - " + perc.numberOfOpenSites());
+        System.out.println("Full sites - " + BitSet.valueOf(perc.fullSitesSnapshot()));
+        System.out.println("Open sites - " + BitSet.valueOf(perc.openSitesSnapshot()));
     }
 }
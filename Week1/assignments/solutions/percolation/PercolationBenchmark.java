@@ -0,0 +1,155 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationBenchmark.java
+ *  Execution:    java PercolationBenchmark n trials [backend ...]
+ *  Dependencies: algs4/Stopwatch.java Percolation.java FlatPercolation.java
+ *                BitsetPercolation.java
+ *
+ *  Times the percolation backends against each other. Every backend replays
+ *  the same seeded random site orders, opening sites until the system
+ *  percolates and then querying isFull for every site, so the timings differ
+ *  only in the backend. The open and isFull phases are timed separately, and
+ *  one untimed round warms up the JIT before measuring. The optional backend
+ *  names restrict the run to some of percolation, flat and bitset, e.g. on
+ *  grids too large for the others (flat is limited to n <= 11585).
+ *
+ *  % java PercolationBenchmark 1000 20
+ *  backend           open (s)  isFull (s)   speedup
+ *  percolation          1.406       0.376      1.00
+ *  flat                 0.867       0.280      1.55
+ *  bitset               0.893       0.325      1.46
+ *
+ *  % java -Xmx3g PercolationBenchmark 4000 5
+ *  backend           open (s)  isFull (s)   speedup
+ *  percolation         14.481       1.591      1.00
+ *  flat                 6.688       1.215      2.03
+ *  bitset              10.273       1.612      1.35
+ *
+ *  At n = 16000 only bitset fits in 4 GB of heap: Percolation needs about
+ *  3.5 GB for its arrays alone and flat is limited to n <= 11585.
+ *
+ *  % java -Xmx3500m PercolationBenchmark 16000 1 bitset
+ *  backend           open (s)  isFull (s)   speedup
+ *  bitset              40.382       4.105      1.00
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+public class PercolationBenchmark {
+
+    private static final List<String> NAMES = List.of("percolation", "flat", "bitset");
+
+    private static final List<IntFunction<PercolationModel>> BACKENDS = List.of(
+            Percolation::new, FlatPercolation::new, BitsetPercolation::new);
+
+    private static final long SEED = 42;
+
+    /**
+     * Fills order with a random permutation of the 1D site indices, the same
+     * one for every backend.
+     *
+     * @param order is the array to fill
+     * @param trial is the index of the trial the order is for
+     */
+    private static void shuffle(int[] order, int trial) {
+
+        SplittableRandom random =
+                new SplittableRandom(PercolationStats.trialSeed(SEED, trial));
+        for (int i = 0; i < order.length; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+    }
+
+    /**
+     * Times all trials on one backend, a new system per trial.
+     *
+     * @param backend creates an n-by-n percolation system
+     * @param n       is the size of the grid
+     * @param trials  is the number of trials
+     * @param order   is scratch space for the site orders
+     * @return the seconds spent opening sites and querying isFull
+     */
+    private static double[] time(IntFunction<PercolationModel> backend, int n,
+                                 int trials, int[] order) {
+
+        double[] elapsed = new double[2];
+        long checksum = 0;
+        for (int trial = 0; trial < trials; trial++) {
+
+            shuffle(order, trial);
+            PercolationModel percolation = backend.apply(n);
+
+            Stopwatch stopwatch = new Stopwatch();
+            for (int i = 0; i < order.length && !percolation.percolates(); i++) {
+                percolation.open(order[i] / n + 1, order[i] % n + 1);
+            }
+            elapsed[0] += stopwatch.elapsedTime();
+
+            stopwatch = new Stopwatch();
+            for (int row = 1; row <= n; row++) {
+                for (int col = 1; col <= n; col++) {
+                    if (percolation.isFull(row, col)) {
+                        checksum++;
+                    }
+                }
+            }
+            elapsed[1] += stopwatch.elapsedTime();
+        }
+
+        // use the result, so the queries cannot be optimized away
+        if (checksum < 0) {
+            System.out.println(checksum);
+        }
+        return elapsed;
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the command-line arguments: n, trials and backend names
+     */
+    public static void main(String[] args) {
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+
+        List<String> names = args.length > 2
+                ? Arrays.asList(args).subList(2, args.length) : NAMES;
+        List<IntFunction<PercolationModel>> backends = new ArrayList<>();
+        for (String name : names) {
+            int i = NAMES.indexOf(name);
+            if (i < 0) {
+                throw new IllegalArgumentException("Unknown backend " + name);
+            }
+            backends.add(BACKENDS.get(i));
+        }
+
+        int[] order = new int[n * n];
+
+        // warm up every backend before timing
+        for (IntFunction<PercolationModel> backend : backends) {
+            time(backend, n, 1, order);
+        }
+
+        System.out.printf("%-15s %10s %11s %9s%n",
+                          "backend", "open (s)", "isFull (s)", "speedup");
+        double baseline = 0;
+        for (int i = 0; i < backends.size(); i++) {
+            double[] elapsed = time(backends.get(i), n, trials, order);
+            double total = elapsed[0] + elapsed[1];
+            if (i == 0) {
+                baseline = total;
+            }
+            System.out.printf("%-15s %10.3f %11.3f %9.2f%n",
+                              names.get(i), elapsed[0], elapsed[1], baseline / total);
+        }
+    }
+}
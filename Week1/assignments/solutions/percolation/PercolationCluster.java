@@ -0,0 +1,627 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationCluster.java
+ *  Execution:    java PercolationCluster n trials [percolation|flat|bitset]
+ *                                        [seed [estimator [workers [port]]]]
+ *                java PercolationCluster worker host port [threads]
+ *  Dependencies: PercolationStats.java RunningStats.java
+ *
+ *  The PercolationCluster class runs the trials of a PercolationStats run
+ *  in several JVMs. A coordinator listens on a localhost socket and splits
+ *  the trials into fixed blocks of consecutive trial indices. Each worker
+ *  process connects, receives the run (n, backend, master seed, estimator),
+ *  and then repeatedly gets a block, runs its trials with all its threads,
+ *  and sends back only their partial sums (count, mean, M2). Trial i draws
+ *  from the random stream derived from the master seed and i, as in a
+ *  single JVM, so a block is the same work whichever worker runs it.
+ *
+ *  The coordinator merges the partial sums of the blocks in block order
+ *  with RunningStats, so the result does not depend on the number of
+ *  workers or on which worker finished first. It agrees with a single-JVM
+ *  run of the same trials up to rounding. If a worker dies or disconnects,
+ *  the block it was running is handed to another worker. A worker sends a
+ *  heartbeat every second while it runs a block, and one that sends
+ *  nothing for 30 seconds, because it hung or its network is partitioned,
+ *  is dropped and its block handed to another worker too. A block that
+ *  is lost MAX_FAILURES times, say because every worker that runs it runs
+ *  out of memory, fails the run, and so does the exit of every local
+ *  worker process while blocks are still unreported.
+ *
+ *  The first form coordinates a run on the given port (default: any free
+ *  port), launching workers local worker processes (default: 2) with the
+ *  same Java runtime and class path, and the heap sizes, --enable-preview
+ *  and -D system properties among its JVM options. With 0 workers it waits
+ *  for workers started by hand with the second form.
+ *
+ *  Protocol, over DataInput/DataOutputStream:
+ *
+ *      coordinator: int magic, int n, UTF backend, long seed,
+ *                   int estimator code
+ *      repeated:
+ *          coordinator: int from, int to        (from = -1: no more work)
+ *          worker:      int -2, every second while running the block
+ *          worker:      int from, long count, double mean, double m2
+ *
+ *  % java PercolationCluster 200 10000 percolation 42 plain 3
+ *  mean                    = 0.5928268575000001
+ *  stddev                  = 0.009681218871458149
+ *  95% confidence interval = [0.5926371056101195, 0.5930166093898807]
+ *
+ ******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntFunction;
+
+public class PercolationCluster {
+
+    private static final int MAGIC = 0x50435354;
+    private static final int NO_MORE_WORK = -1;
+    private static final int HEARTBEAT = -2;
+
+    // how often a worker running a block tells the coordinator it is alive,
+    // and how long the coordinator waits for a word before dropping it
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+
+    // how many times a block may be lost before the run fails
+    private static final int MAX_FAILURES = 3;
+
+    /**
+     * The number of trials in a block, unless the coordinator is told otherwise.
+     */
+    public static final int DEFAULT_BLOCK = 256;
+
+    // how often an idle connection checks whether the run is over
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final int n;
+    private final int trials;
+    private final String backend;
+    private final long seed;
+    private final PercolationStats.Estimator estimator;
+    private final int block;
+
+    // partial sums of every block, filled in as workers report them
+    private final RunningStats[] partials;
+    private final LinkedBlockingQueue<Integer> pending = new LinkedBlockingQueue<>();
+    private final CountDownLatch finished;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    // times each block was lost, and the failure that ended the run, if any
+    private final AtomicIntegerArray failures;
+    private volatile RuntimeException failure;
+
+    // threads serving the connected workers, joined at the end of the run so
+    // every worker is told there is no more work
+    private final ConcurrentLinkedQueue<Thread> serving = new ConcurrentLinkedQueue<>();
+    private Thread acceptor;
+
+    /**
+     * Sets up the blocks of a run, all pending.
+     *
+     * @param n         is the size of the grid
+     * @param trials    is the number of experiments
+     * @param backend   is the name of the percolation backend
+     * @param seed      is the master seed the trial random streams derive from
+     * @param estimator is the estimator each trial uses
+     * @param block     is the number of trials in a block
+     */
+    private PercolationCluster(int n, int trials, String backend, long seed,
+                               PercolationStats.Estimator estimator, int block) {
+
+        this.n = n;
+        this.trials = trials;
+        this.backend = backend;
+        this.seed = seed;
+        this.estimator = estimator;
+        this.block = block;
+
+        int blocks = (int) ((trials + (long) block - 1) / block);
+        partials = new RunningStats[blocks];
+        finished = new CountDownLatch(blocks);
+        failures = new AtomicIntegerArray(blocks);
+        for (int i = 0; i < blocks; i++) {
+            pending.add(i);
+        }
+    }
+
+    /**
+     * Coordinates a run of trials number of reproducible experiments on an
+     * n-by-n grid, handing blocks of trials to the workers that connect to
+     * the server socket, until every block has been reported.
+     *
+     * @param server    is the socket the workers connect to; it is closed
+     *                  when the run is over
+     * @param n         is the size of the grid
+     * @param trials    is the number of experiments
+     * @param backend   is percolation, flat or bitset
+     * @param seed      is the master seed the trial random streams derive from
+     * @param estimator is the estimator each trial uses
+     * @param block     is the number of trials in a block
+     * @return the statistics of all trials
+     * @throws IllegalArgumentException if n, trials or block <= 0, or if there
+     *                                  is no backend of that name
+     * @throws IllegalStateException if a block was lost MAX_FAILURES times
+     * @throws UncheckedIOException if the server socket fails
+     */
+    public static PercolationStats coordinate(ServerSocket server, int n, int trials,
+                                              String backend, long seed,
+                                              PercolationStats.Estimator estimator,
+                                              int block) {
+
+        PercolationCluster run = start(server, n, trials, backend, seed, estimator, block);
+        while (!run.awaitFinished(server)) {
+            // workers started by hand may take any time to connect
+        }
+        return run.finish(server);
+    }
+
+    /**
+     * Sets up a run and starts accepting workers on the server socket.
+     *
+     * @param server    is the socket the workers connect to
+     * @param n         is the size of the grid
+     * @param trials    is the number of experiments
+     * @param backend   is percolation, flat or bitset
+     * @param seed      is the master seed the trial random streams derive from
+     * @param estimator is the estimator each trial uses
+     * @param block     is the number of trials in a block
+     * @return the run
+     * @throws IllegalArgumentException if n, trials or block <= 0, or if there
+     *                                  is no backend of that name
+     */
+    private static PercolationCluster start(ServerSocket server, int n, int trials,
+                                            String backend, long seed,
+                                            PercolationStats.Estimator estimator,
+                                            int block) {
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("Grid size must be greater than 0");
+        }
+
+        if (trials <= 0) {
+            throw new IllegalArgumentException("Number of trials must be greater than 0");
+        }
+
+        if (block <= 0) {
+            throw new IllegalArgumentException("Block size must be greater than 0");
+        }
+        PercolationStats.backend(backend);
+
+        PercolationCluster run = new PercolationCluster(n, trials, backend, seed,
+                                                        estimator, block);
+        run.acceptor = new Thread(() -> run.accept(server), "cluster-accept");
+        run.acceptor.setDaemon(true);
+        run.acceptor.start();
+        return run;
+    }
+
+    /**
+     * Waits up to IDLE_POLL_MILLIS for every block to be reported.
+     *
+     * @param server is the socket the workers connect to; it is closed if
+     *               the run fails
+     * @return {@code true} if every block has been reported
+     * @throws IllegalStateException if a block was lost MAX_FAILURES times,
+     *                               or if interrupted
+     */
+    private boolean awaitFinished(ServerSocket server) {
+
+        try {
+            boolean isFinished = finished.await(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (failure != null) {
+                throw failure;
+            }
+            return isFinished;
+        }
+        catch (InterruptedException e) {
+            close(server);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted before the run was over", e);
+        }
+        catch (RuntimeException e) {
+            close(server);
+            throw e;
+        }
+    }
+
+    /**
+     * Ends a run whose blocks have all been reported: closes the server
+     * socket, waits until every worker has been told there is no more work,
+     * and merges the partial sums of the blocks in block order.
+     *
+     * @param server is the socket the workers connect to
+     * @return the statistics of all trials
+     * @throws IllegalStateException if interrupted
+     */
+    private PercolationStats finish(ServerSocket server) {
+
+        close(server);
+        try {
+            acceptor.join();
+            for (Thread thread : serving) {
+                thread.join();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted before the run was over", e);
+        }
+
+        RunningStats merged = new RunningStats();
+        for (RunningStats partial : partials) {
+            merged.merge(partial);
+        }
+        return PercolationStats.fromPartialSums(n, estimator, merged);
+    }
+
+    /**
+     * Accepts workers until the server socket is closed, serving each one in
+     * its own thread.
+     *
+     * @param server is the socket the workers connect to
+     */
+    private void accept(ServerSocket server) {
+
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serve(socket),
+                                           "cluster-worker-" + connections.incrementAndGet());
+                thread.setDaemon(true);
+                serving.add(thread);
+                thread.start();
+            }
+            catch (IOException e) {
+                // the server socket was closed at the end of the run
+            }
+        }
+    }
+
+    /**
+     * Sends the run to a worker, then hands it pending blocks until the run
+     * is over. If the worker fails, or sends nothing for READ_TIMEOUT_MILLIS
+     * while running a block, the block is put back for another worker, or
+     * after MAX_FAILURES losses the run fails.
+     *
+     * @param socket is the connection to the worker
+     */
+    private void serve(Socket socket) {
+
+        try (socket;
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(socket.getOutputStream()))) {
+
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            out.writeInt(MAGIC);
+            out.writeInt(n);
+            out.writeUTF(backend);
+            out.writeLong(seed);
+            out.writeInt(estimator.code());
+            out.flush();
+
+            while (failure == null) {
+                Integer next = pending.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    if (finished.getCount() == 0) {
+                        out.writeInt(NO_MORE_WORK);
+                        out.writeInt(NO_MORE_WORK);
+                        out.flush();
+                        return;
+                    }
+                    continue;
+                }
+
+                try {
+                    runBlock(next, in, out);
+                }
+                catch (IOException | RuntimeException e) {
+                    lost(next, e);
+                    throw e;
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            System.err.println("Worker " + socket.getRemoteSocketAddress()
+                                       + " lost: " + e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Puts a lost block back for another worker, or fails the run if the
+     * block has been lost MAX_FAILURES times.
+     *
+     * @param index is the index of the block
+     * @param cause is why it was lost
+     */
+    private void lost(int index, Exception cause) {
+
+        if (failures.incrementAndGet(index) < MAX_FAILURES) {
+            pending.add(index);
+        }
+        else {
+            int from = index * block;
+            int to = (int) Math.min((long) from + block, trials);
+            failure = new IllegalStateException("Trials [" + from + ", " + to + ") were lost "
+                                                        + MAX_FAILURES + " times", cause);
+        }
+    }
+
+    /**
+     * Has a worker run one block and records its partial sums.
+     *
+     * @param index is the index of the block
+     * @param in    is the stream from the worker
+     * @param out   is the stream to the worker
+     * @throws IOException if the connection fails or the worker stays silent
+     *                     for READ_TIMEOUT_MILLIS
+     * @throws IllegalStateException if the worker reports another block
+     */
+    private void runBlock(int index, DataInputStream in, DataOutputStream out)
+            throws IOException {
+
+        int from = index * block;
+        int to = (int) Math.min((long) from + block, trials);
+        out.writeInt(from);
+        out.writeInt(to);
+        out.flush();
+
+        int reported = in.readInt();
+        while (reported == HEARTBEAT) {
+            reported = in.readInt();
+        }
+        long count = in.readLong();
+        double mean = in.readDouble();
+        double m2 = in.readDouble();
+        if (reported != from || count != to - from) {
+            throw new IllegalStateException("Expected trials [" + from + ", " + to
+                                                    + "), got " + count + " from " + reported);
+        }
+
+        partials[index] = new RunningStats(count, mean, m2);
+        finished.countDown();
+    }
+
+    /**
+     * Connects to a coordinator and runs the blocks of trials it hands out
+     * until it has no more work, sending a heartbeat every HEARTBEAT_MILLIS
+     * while it runs a block.
+     *
+     * @param host        is the host of the coordinator
+     * @param port        is the port of the coordinator
+     * @param parallelism is the number of worker threads
+     * @throws IllegalArgumentException if parallelism <= 0
+     * @throws UncheckedIOException if the connection fails
+     */
+    public static void work(String host, int port, int parallelism) {
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(socket.getOutputStream()))) {
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException(host + ":" + port + " is not a coordinator");
+            }
+            int n = in.readInt();
+            IntFunction<PercolationModel> backend = PercolationStats.backend(in.readUTF());
+            long seed = in.readLong();
+            int code = in.readInt();
+            PercolationStats.Estimator estimator;
+            try {
+                estimator = PercolationStats.Estimator.fromCode(code);
+            }
+            catch (IllegalArgumentException e) {
+                throw new IOException(host + ":" + port + " sent the unknown estimator code "
+                                              + code, e);
+            }
+
+            while (true) {
+                int from = in.readInt();
+                int to = in.readInt();
+                if (from == NO_MORE_WORK) {
+                    return;
+                }
+
+                FutureTask<RunningStats> shard = new FutureTask<>(
+                        () -> PercolationStats.shard(n, from, to, backend, seed,
+                                                     parallelism, estimator));
+                Thread thread = new Thread(shard, "cluster-block-" + from);
+                thread.setDaemon(true);
+                thread.start();
+
+                RunningStats partial = null;
+                while (partial == null) {
+                    try {
+                        partial = shard.get(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                    catch (TimeoutException e) {
+                        out.writeInt(HEARTBEAT);
+                        out.flush();
+                    }
+                }
+                out.writeInt(from);
+                out.writeLong(partial.count());
+                out.writeDouble(partial.mean());
+                out.writeDouble(partial.m2());
+                out.flush();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Lost the coordinator at " + host + ":" + port, e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("A block failed", e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running a block", e);
+        }
+    }
+
+    /**
+     * Launches a worker process of this class with the same Java runtime and
+     * class path as this one, and those of its JVM options that are safe to
+     * share (see isForwarded).
+     *
+     * @param port        is the port of the coordinator on localhost
+     * @param parallelism is the number of worker threads
+     * @return the worker process, whose output goes to this one's
+     * @throws UncheckedIOException if the process cannot be started
+     */
+    public static Process launchWorker(int port, int parallelism) {
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (isForwarded(option)) {
+                command.add(option);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PercolationCluster.class.getName());
+        command.add("worker");
+        command.add("localhost");
+        command.add(Integer.toString(port));
+        command.add(Integer.toString(parallelism));
+
+        try {
+            return new ProcessBuilder(command).inheritIO().start();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot launch a worker", e);
+        }
+    }
+
+    /**
+     * Checks if a JVM option of the coordinator is passed on to the workers it
+     * launches. Only the heap sizes, --enable-preview and -D system properties
+     * are; options such as a debugger port or a flight recording file would
+     * collide between the processes.
+     *
+     * @param option is a JVM option of this process
+     * @return {@code true} if the workers get the option too
+     */
+    private static boolean isForwarded(String option) {
+
+        return option.startsWith("-Xmx") || option.startsWith("-Xms")
+                || option.startsWith("-D") || option.equals("--enable-preview");
+    }
+
+    /**
+     * Closes the server socket at the end of a run.
+     *
+     * @param server is the socket the workers connect to
+     */
+    private static void close(ServerSocket server) {
+
+        try {
+            server.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot close the server socket", e);
+        }
+    }
+
+    /**
+     * Coordinates a run with local worker processes, or runs a worker.
+     *
+     * @param args the command-line arguments: n, trials, backend, seed,
+     *             estimator, workers and port, or worker, host, port and threads
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args[0].equals("worker")) {
+            int threads = args.length > 3 ? Integer.parseInt(args[3])
+                                          : Runtime.getRuntime().availableProcessors();
+            work(args[1], Integer.parseInt(args[2]), threads);
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        String backend = args.length > 2 ? args[2] : "percolation";
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        PercolationStats.Estimator estimator = args.length > 4
+                ? PercolationStats.Estimator.valueOf(args[4].toUpperCase())
+                : PercolationStats.Estimator.PLAIN;
+        int localWorkers = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+        int port = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+
+        ServerSocket server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        if (localWorkers == 0) {
+            System.out.println("waiting for workers on port " + server.getLocalPort());
+        }
+
+        // share the cores of this host between the local workers
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors()
+                / Math.max(1, localWorkers));
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < localWorkers; i++) {
+            processes.add(launchWorker(server.getLocalPort(), threads));
+        }
+
+        PercolationCluster run = start(server, n, trials, backend, seed, estimator,
+                                       DEFAULT_BLOCK);
+        while (!run.awaitFinished(server)) {
+            if (!processes.isEmpty()
+                    && processes.stream().noneMatch(Process::isAlive)
+                    && run.finished.getCount() > 0) {
+                close(server);
+                throw new IllegalStateException("Every worker exited with "
+                                                        + run.finished.getCount()
+                                                        + " blocks unreported");
+            }
+        }
+        PercolationStats pStats = run.finish(server);
+        for (Process process : processes) {
+            try {
+                process.waitFor();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        System.out.println("mean                    = " + pStats.mean());
+        System.out.println("stddev                  = " + pStats.stddev());
+        System.out.println("95% confidence interval = ["
+                                   + pStats.confidenceLo() + ", "
+                                   + pStats.confidenceHi() + "]");
+    }
+}
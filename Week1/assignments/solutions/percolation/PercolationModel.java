@@ -0,0 +1,95 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationModel.java
+ *  Dependencies: none
+ *
+ *  The PercolationModel interface is the public API shared by the percolation
+ *  backends (Percolation, FlatPercolation). Clients such as PercolationStats
+ *  are written against this interface so that the backend can be swapped
+ *  without changing the experiment code.
+ ******************************************************************************/
+
+public interface PercolationModel {
+
+    /**
+     * Blocks every site again, restoring the state of a newly created grid,
+     * so that one instance can be reused across trials.
+     */
+    void reset();
+
+    /**
+     * Opens the site (row, col) if it is not open already
+     *
+     * @param row and col are the coordinates of the site
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    void open(int row, int col);
+
+    /**
+     * Opens a site known to be blocked and in bounds, skipping validation.
+     * This is the internal fast path for trial drivers that draw every site
+     * at most once; calling it on an open or out-of-bounds site corrupts the
+     * system.
+     *
+     * @param site is the 1D coordinate (row - 1) * n + (col - 1) of the site
+     */
+    void openBlockedSite(int site);
+
+    /**
+     * Checks if the site (row, col) is open or not.
+     *
+     * @param row and col are the coordinates of the site
+     * @return {@code true} if the site (row, col) is open;
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    boolean isOpen(int row, int col);
+
+    /**
+     * Checks if the site (row, col) is full or not.
+     *
+     * @param row and col are the coordinates of the site
+     * @return {@code true} if the site (row, col) is full;
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    boolean isFull(int row, int col);
+
+    /**
+     * Returns the size of the open cluster containing the site (row, col).
+     *
+     * @param row and col are the coordinates of the site
+     * @return the number of open sites connected to the site (row, col), or
+     *         0 if the site is blocked
+     * @throws IllegalArgumentException if the site (row, col) is out of bounds
+     */
+    int clusterSize(int row, int col);
+
+    /**
+     * Returns the number of open sites.
+     *
+     * @return the number of open sites
+     */
+    int numberOfOpenSites();
+
+    /**
+     * Returns the work counters of this system, for instrumentation. They
+     * count only when the JVM runs with -Dpercolation.counters=true.
+     *
+     * @return the counters of this system
+     */
+    PercolationCounters counters();
+
+    /**
+     * Checks if the system percolates or not.
+     *
+     * @return {@code true} if the system percolates;
+     */
+    boolean percolates();
+
+    /**
+     * Checks if an open cluster connects the left and right columns. By
+     * symmetry this happens, on average, after as many opens as vertical
+     * percolation, which makes it a cheap control variate.
+     *
+     * @return {@code true} if the system percolates from left to right;
+     */
+    boolean percolatesHorizontally();
+}
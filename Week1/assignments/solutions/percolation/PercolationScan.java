@@ -0,0 +1,380 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationScan.java                  (JDK 22 or later)
+ *  Execution:    java PercolationScan n bitmap-file [p [seed]]
+ *  Dependencies: none
+ *
+ *  The PercolationScan class checks whether a given open/blocked
+ *  configuration percolates without building a percolation system. The
+ *  configuration is a bitmap file of n rows, each ceil(n / 8) bytes long,
+ *  where bit (col % 8) of byte (col / 8) of a row is set if the site in
+ *  column col (0-based) is open. This is the layout of BitSet.toByteArray.
+ *
+ *  The file is memory-mapped and read once, one row at a time, and the open
+ *  sites are labeled with the Hoshen-Kopelman algorithm: a site takes the
+ *  label of its open neighbor above or to the left, and a site that joins
+ *  two labels unions them. After each row the labels still present in it
+ *  are renumbered 0, 1, 2, ..., so the union-find never holds more than
+ *  n + 1 labels and the scan needs O(n) memory whatever the number of rows.
+ *  Grids far larger than RAM are handled in one sequential pass.
+ *
+ *  With a third argument, main first writes a random configuration where
+ *  each site is open with probability p.
+ *
+ *  % java PercolationScan 20000 grid.bin 0.5927 42
+ *  percolates      = true
+ *  open sites      = 237073623
+ *  clusters        = 11054034
+ *  largest cluster = 76159732
+ *
+ ******************************************************************************/
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class PercolationScan {
+
+    private static final int BLOCKED = -1;
+
+    private final int n;
+
+    // union-find over the labels of the previous and the current row
+    private final int[] parent;
+    private final long[] size;
+    private final boolean[] top;
+
+    // the same data, renumbered for the labels that survive a row
+    private final long[] nextSize;
+    private final boolean[] nextTop;
+    private final int[] renumbered;
+    private final int[] survivors;
+
+    private int labelCount = 0;
+    private boolean hasPercolated = false;
+    private long openSiteCount = 0;
+    private long clusterCount = 0;
+    private long largestClusterSize = 0;
+
+    /**
+     * Scans the n-by-n configuration stored in the given bitmap file.
+     *
+     * @param n          is the size of the grid
+     * @param bitmapFile is the file holding the configuration
+     * @throws IllegalArgumentException if n <= 0 or the file is not n rows of
+     *                                  ceil(n / 8) bytes
+     * @throws UncheckedIOException if the file cannot be mapped
+     */
+    public PercolationScan(int n, Path bitmapFile) {
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("Size must be greater than 0");
+        }
+
+        this.n = n;
+        parent = new int[n + 1];
+        size = new long[n + 1];
+        top = new boolean[n + 1];
+        nextSize = new long[n + 1];
+        nextTop = new boolean[n + 1];
+        renumbered = new int[n + 1];
+        survivors = new int[n + 1];
+        Arrays.fill(renumbered, BLOCKED);
+
+        int rowBytes = rowBytes(n);
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(bitmapFile, StandardOpenOption.READ)) {
+
+            if (channel.size() != (long) rowBytes * n) {
+                throw new IllegalArgumentException(
+                        bitmapFile + " is " + channel.size() + " bytes, not "
+                                + n + " rows of " + rowBytes + " bytes");
+            }
+
+            MemorySegment bitmap = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                               channel.size(), arena);
+            scan(bitmap, rowBytes);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot map " + bitmapFile, e);
+        }
+    }
+
+    /**
+     * Labels every row in turn, keeping only the labels of the previous row.
+     *
+     * @param bitmap   is the mapped configuration
+     * @param rowBytes is the number of bytes per row
+     */
+    private void scan(MemorySegment bitmap, int rowBytes) {
+
+        byte[] row = new byte[rowBytes];
+        int[] above = new int[n];
+        int[] labels = new int[n];
+        Arrays.fill(above, BLOCKED);
+
+        for (int r = 0; r < n; r++) {
+
+            MemorySegment.copy(bitmap, ValueLayout.JAVA_BYTE, (long) r * rowBytes,
+                               row, 0, rowBytes);
+
+            int left = BLOCKED;
+            for (int col = 0; col < n; col++) {
+                if ((row[col >>> 3] & (1 << (col & 7))) == 0) {
+                    left = BLOCKED;
+                }
+                else {
+                    left = label(above[col], left, r == 0);
+                }
+                labels[col] = left;
+            }
+
+            if (r == n - 1) {
+                for (int label : labels) {
+                    if (label != BLOCKED && top[find(label)]) {
+                        hasPercolated = true;
+                    }
+                }
+            }
+
+            renumber(labels);
+            int[] swap = above;
+            above = labels;
+            labels = swap;
+        }
+    }
+
+    /**
+     * Labels an open site from its neighbors above and to the left.
+     *
+     * @param above    is the label of the site above, or BLOCKED
+     * @param left     is the label of the site to the left, or BLOCKED
+     * @param firstRow is {@code true} if the site is in the top row
+     * @return the root label of the site's cluster
+     */
+    private int label(int above, int left, boolean firstRow) {
+
+        openSiteCount++;
+
+        int root;
+        if (above == BLOCKED && left == BLOCKED) {
+            root = labelCount++;
+            parent[root] = root;
+            size[root] = 0;
+            top[root] = firstRow;
+            clusterCount++;
+        }
+        else if (above == BLOCKED) {
+            root = left;
+        }
+        else if (left == BLOCKED) {
+            root = find(above);
+        }
+        else {
+            root = union(find(above), left);
+        }
+
+        size[root]++;
+        if (size[root] > largestClusterSize) {
+            largestClusterSize = size[root];
+        }
+        return root;
+    }
+
+    /**
+     * Unions two clusters, linking the smaller one below the larger one.
+     *
+     * @param p and q are root labels
+     * @return the root label of the merged cluster
+     */
+    private int union(int p, int q) {
+
+        if (p == q) {
+            return p;
+        }
+
+        clusterCount--;
+        if (size[p] < size[q]) {
+            int swap = p;
+            p = q;
+            q = swap;
+        }
+        parent[q] = p;
+        size[p] += size[q];
+        top[p] |= top[q];
+        return p;
+    }
+
+    /**
+     * Returns the root label of a label, halving the path on the way.
+     *
+     * @param label is a label of the previous or the current row
+     * @return the root label
+     */
+    private int find(int label) {
+
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+    /**
+     * Replaces the labels of the finished row by their clusters, numbered
+     * from 0 in order of first appearance. Clusters without a site in the
+     * row are complete and their labels are recycled.
+     *
+     * @param labels are the labels of the row, BLOCKED for blocked sites
+     */
+    private void renumber(int[] labels) {
+
+        int count = 0;
+        for (int col = 0; col < n; col++) {
+            if (labels[col] == BLOCKED) {
+                continue;
+            }
+
+            int root = find(labels[col]);
+            if (renumbered[root] == BLOCKED) {
+                renumbered[root] = count;
+                survivors[count] = root;
+                nextSize[count] = size[root];
+                nextTop[count] = top[root];
+                count++;
+            }
+            labels[col] = renumbered[root];
+        }
+
+        for (int label = 0; label < count; label++) {
+            renumbered[survivors[label]] = BLOCKED;
+            parent[label] = label;
+            size[label] = nextSize[label];
+            top[label] = nextTop[label];
+        }
+        labelCount = count;
+    }
+
+    /**
+     * Checks if the configuration percolates or not.
+     *
+     * @return {@code true} if an open cluster connects the top and bottom rows;
+     */
+    public boolean percolates() {
+
+        return hasPercolated;
+    }
+
+    /**
+     * Returns the number of open sites.
+     *
+     * @return the number of open sites
+     */
+    public long numberOfOpenSites() {
+
+        return openSiteCount;
+    }
+
+    /**
+     * Returns the number of open clusters.
+     *
+     * @return the number of maximal connected sets of open sites
+     */
+    public long numberOfClusters() {
+
+        return clusterCount;
+    }
+
+    /**
+     * Returns the size of the largest open cluster.
+     *
+     * @return the number of open sites in the largest cluster, or 0 if every
+     *         site is blocked
+     */
+    public long largestClusterSize() {
+
+        return largestClusterSize;
+    }
+
+    /**
+     * Returns the number of bytes of a row of an n-by-n bitmap.
+     *
+     * @param n is the size of the grid
+     * @return ceil(n / 8)
+     */
+    public static int rowBytes(int n) {
+
+        return (n + 7) >>> 3;
+    }
+
+    /**
+     * Writes a random n-by-n configuration, where each site is open with
+     * probability p, as a bitmap file.
+     *
+     * @param n          is the size of the grid
+     * @param p          is the site vacancy probability
+     * @param seed       is the seed of the random configuration
+     * @param bitmapFile is the file to write
+     * @throws IllegalArgumentException if n <= 0 or p is not between 0 and 1
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public static void writeRandom(int n, double p, long seed, Path bitmapFile) {
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("Size must be greater than 0");
+        }
+
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p " + p + " is not between 0 and 1");
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[] row = new byte[rowBytes(n)];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(bitmapFile))) {
+            for (int r = 0; r < n; r++) {
+                Arrays.fill(row, (byte) 0);
+                for (int col = 0; col < n; col++) {
+                    if (random.nextDouble() < p) {
+                        row[col >>> 3] |= (byte) (1 << (col & 7));
+                    }
+                }
+                out.write(row);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + bitmapFile, e);
+        }
+    }
+
+    /**
+     * Scans a bitmap file, writing a random one first if p is given.
+     *
+     * @param args the command-line arguments: n, the file, p and seed
+     */
+    public static void main(String[] args) {
+
+        int n = Integer.parseInt(args[0]);
+        Path bitmapFile = Path.of(args[1]);
+
+        if (args.length > 2) {
+            long seed = args.length > 3 ? Long.parseLong(args[3])
+                                        : new SplittableRandom().nextLong();
+            writeRandom(n, Double.parseDouble(args[2]), seed, bitmapFile);
+        }
+
+        PercolationScan scan = new PercolationScan(n, bitmapFile);
+        System.out.println("percolates      = " + scan.percolates());
+        System.out.println("open sites      = " + scan.numberOfOpenSites());
+        System.out.println("clusters        = " + scan.numberOfClusters());
+        System.out.println("largest cluster = " + scan.largestClusterSize());
+    }
+}
@@ -0,0 +1,437 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationSizeSweep.java
+ *  Execution:    java PercolationSizeSweep sizes trials [percolation|flat|bitset]
+ *                                          [seed [threads [estimator
+ *                                          [csv|binary [output-file]]]]]
+ *  Dependencies: PercolationStats.java RunningStats.java
+ *
+ *  The PercolationSizeSweep class runs PercolationStats for many grid sizes
+ *  in one JVM, as needed for finite-size scaling, so JVM startup and JIT
+ *  warm-up are paid once per sweep instead of once per size. The sizes are
+ *  a list (50,100,200) or a geometric range from:to:count (50:5000:8 is 8
+ *  sizes from 50 to 5000 with a constant ratio).
+ *
+ *  Every size runs trials trials, split into BLOCKS_PER_SIZE blocks of
+ *  consecutive trials. The blocks of all sizes are queued largest size
+ *  first and taken by threads worker threads, so the costliest work starts
+ *  first and the small sizes fill the gaps at the end. Each worker keeps
+ *  the percolation system of the size it last ran and reuses it, reset, for
+ *  the next block of the same size. The partial sums of the blocks of a size
+ *  are merged in block order, and the trials of size n draw from the master
+ *  seed derived for n, so the result for a size depends neither on the
+ *  number of threads nor on the other sizes in the sweep.
+ *
+ *  Each size is written as soon as its last block finishes, as a CSV line
+ *
+ *      n,trials,mean,stddev,lo,hi,seconds
+ *
+ *  or, in binary, as a 32-byte record after a 20-byte header
+ *
+ *      header: int magic, int version, int estimator code, long seed
+ *      record: int n, int trials, double mean, double stddev, double seconds
+ *
+ *  where seconds is the time spent in the trials of the size, summed over
+ *  the workers.
+ *
+ *  % java PercolationSizeSweep 25:400:5 1000 percolation 42
+ *  n,trials,mean,stddev,lo,hi,seconds
+ *  400,1000,0.5927664063,0.00588620,0.59240158,0.59313124,14.656
+ *  200,1000,0.5926741750,0.00965223,0.59207592,0.59327243,2.635
+ *  100,1000,0.5931116000,0.01582219,0.59213093,0.59409227,0.593
+ *  50,1000,0.5936592000,0.02606954,0.59204339,0.59527501,0.155
+ *  25,1000,0.5913152000,0.04275105,0.58866546,0.59396494,0.051
+ *
+ ******************************************************************************/
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+
+public class PercolationSizeSweep {
+
+    private static final int MAGIC = 0x50535750;
+    private static final int VERSION = 1;
+
+    /**
+     * The number of blocks the trials of each size are split into.
+     */
+    public static final int BLOCKS_PER_SIZE = 16;
+
+    /**
+     * The output formats of a sweep.
+     */
+    public enum Format {
+
+        /**
+         * One CSV line per size, after a header line.
+         */
+        CSV,
+
+        /**
+         * One 32-byte record per size, after a 20-byte header.
+         */
+        BINARY
+    }
+
+    private final int[] sizes;
+    private final int trials;
+    private final IntFunction<? extends PercolationModel> backend;
+    private final long seed;
+    private final PercolationStats.Estimator estimator;
+    private final Format format;
+    private final DataOutputStream out;
+
+    // blocks[s][b] holds the partial sums of block b of sizes[s]
+    private final RunningStats[][] blocks;
+    private final AtomicIntegerArray remaining;
+    private final AtomicLongArray nanos;
+    private final PercolationStats[] results;
+
+    // the blocks to run, as size index * BLOCKS_PER_SIZE + block, largest first
+    private final ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<>();
+
+    // the percolation system each worker ran last, with its size
+    private final ThreadLocal<Pooled> pooled = new ThreadLocal<>();
+
+    private RuntimeException failure;
+
+    /**
+     * A percolation system kept by a worker for the next block of its size.
+     */
+    private static final class Pooled {
+
+        private final int n;
+        private final PercolationModel percolation;
+
+        Pooled(int n, PercolationModel percolation) {
+
+            this.n = n;
+            this.percolation = percolation;
+        }
+    }
+
+    /**
+     * Queues the blocks of every size, largest size first.
+     *
+     * @param sizes     are the sizes of the grids
+     * @param trials    is the number of experiments per size
+     * @param backend   creates an n-by-n percolation system
+     * @param seed      is the master seed of the sweep
+     * @param estimator is the estimator each trial uses
+     * @param format    is the output format
+     * @param out       is the stream the results are written to
+     */
+    private PercolationSizeSweep(int[] sizes, int trials,
+                                 IntFunction<? extends PercolationModel> backend,
+                                 long seed, PercolationStats.Estimator estimator,
+                                 Format format, OutputStream out) {
+
+        this.sizes = sizes.clone();
+        this.trials = trials;
+        this.backend = backend;
+        this.seed = seed;
+        this.estimator = estimator;
+        this.format = format;
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+
+        blocks = new RunningStats[sizes.length][BLOCKS_PER_SIZE];
+        remaining = new AtomicIntegerArray(sizes.length);
+        nanos = new AtomicLongArray(sizes.length);
+        results = new PercolationStats[sizes.length];
+
+        Integer[] bySize = new Integer[sizes.length];
+        for (int s = 0; s < sizes.length; s++) {
+            bySize[s] = s;
+        }
+        Arrays.sort(bySize, (a, b) -> Integer.compare(sizes[b], sizes[a]));
+        for (int s : bySize) {
+            int count = Math.min(BLOCKS_PER_SIZE, trials);
+            remaining.set(s, count);
+            for (int b = 0; b < count; b++) {
+                pending.add(s * BLOCKS_PER_SIZE + b);
+            }
+        }
+    }
+
+    /**
+     * Runs trials reproducible experiments for every grid size, streaming the
+     * statistics of each size to out as soon as they are complete.
+     *
+     * @param sizes       are the sizes of the grids
+     * @param trials      is the number of experiments per size
+     * @param backend     creates an n-by-n percolation system
+     * @param seed        is the master seed of the sweep
+     * @param parallelism is the number of worker threads
+     * @param estimator   is the estimator each trial uses
+     * @param format      is the output format
+     * @param out         is the stream the results are written to; it is
+     *                    flushed after every size but not closed
+     * @return the statistics of every size, in the order of sizes
+     * @throws IllegalArgumentException if sizes is empty or a size, trials or
+     *                                  parallelism <= 0
+     * @throws UncheckedIOException if the output cannot be written
+     */
+    public static PercolationStats[] sweep(int[] sizes, int trials,
+                                           IntFunction<? extends PercolationModel> backend,
+                                           long seed, int parallelism,
+                                           PercolationStats.Estimator estimator,
+                                           Format format, OutputStream out) {
+
+        if (sizes.length == 0) {
+            throw new IllegalArgumentException("No grid sizes to sweep");
+        }
+
+        for (int n : sizes) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Grid size must be greater than 0");
+            }
+        }
+
+        if (trials <= 0) {
+            throw new IllegalArgumentException("Number of trials must be greater than 0");
+        }
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+
+        PercolationSizeSweep sweep = new PercolationSizeSweep(sizes, trials, backend, seed,
+                                                              estimator, format, out);
+        sweep.writeHeader();
+
+        Thread[] workers = new Thread[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Thread(sweep::work, "sweep-worker-" + i);
+            workers[i].start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted before the sweep was over", e);
+        }
+
+        if (sweep.failure != null) {
+            throw sweep.failure;
+        }
+        return sweep.results;
+    }
+
+    /**
+     * Runs queued blocks until there are none left or a block has failed.
+     */
+    private void work() {
+
+        Integer next;
+        while ((next = pending.poll()) != null) {
+            try {
+                runBlock(next / BLOCKS_PER_SIZE, next % BLOCKS_PER_SIZE);
+            }
+            catch (RuntimeException e) {
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+                pending.clear();
+            }
+        }
+    }
+
+    /**
+     * Runs one block of trials, and writes its size if it was the last block.
+     *
+     * @param s     is the index of the size
+     * @param block is the index of the block
+     */
+    private void runBlock(int s, int block) {
+
+        int n = sizes[s];
+        int count = Math.min(BLOCKS_PER_SIZE, trials);
+        int from = (int) ((long) trials * block / count);
+        int to = (int) ((long) trials * (block + 1) / count);
+
+        // a shard of parallelism 1 runs its trials in this thread without
+        // forking, so the threads of the sweep are its only workers and each
+        // keeps a single pooled system
+        long start = System.nanoTime();
+        blocks[s][block] = PercolationStats.shard(n, from, to, this::pooled,
+                                                  sizeSeed(seed, n), 1, estimator);
+        nanos.addAndGet(s, System.nanoTime() - start);
+
+        if (remaining.decrementAndGet(s) == 0) {
+            RunningStats merged = new RunningStats();
+            for (int b = 0; b < count; b++) {
+                merged.merge(blocks[s][b]);
+            }
+            results[s] = PercolationStats.fromPartialSums(n, estimator, merged);
+            write(n, results[s], nanos.get(s) / 1e9);
+        }
+    }
+
+    /**
+     * Returns the percolation system this worker ran last if it has size n,
+     * or a new one. The trials of a block leave their system reset, and a
+     * worker runs one block at a time, so the system is never shared.
+     *
+     * @param n is the size of the grid
+     * @return an n-by-n percolation system with all sites blocked
+     */
+    private PercolationModel pooled(int n) {
+
+        Pooled last = pooled.get();
+        if (last == null || last.n != n) {
+            last = new Pooled(n, backend.apply(n));
+            pooled.set(last);
+        }
+        return last.percolation;
+    }
+
+    /**
+     * Derives the master seed of the trials of one grid size, so the trials
+     * of a size do not depend on the other sizes of the sweep.
+     *
+     * @param seed is the master seed of the sweep
+     * @param n    is the size of the grid
+     * @return the master seed of the trials of size n
+     */
+    static long sizeSeed(long seed, int n) {
+
+        return PercolationStats.trialSeed(seed, n);
+    }
+
+    /**
+     * Writes the CSV header line or the binary header.
+     */
+    private synchronized void writeHeader() {
+
+        try {
+            if (format == Format.CSV) {
+                out.write("n,trials,mean,stddev,lo,hi,seconds\n"
+                                  .getBytes(StandardCharsets.US_ASCII));
+            }
+            else {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(estimator.code());
+                out.writeLong(seed);
+            }
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the sweep header", e);
+        }
+    }
+
+    /**
+     * Writes the statistics of one grid size and flushes them.
+     *
+     * @param n       is the size of the grid
+     * @param stats   are the statistics of its trials
+     * @param seconds is the time spent in its trials
+     */
+    private synchronized void write(int n, PercolationStats stats, double seconds) {
+
+        try {
+            if (format == Format.CSV) {
+                String line = String.format("%d,%d,%.10f,%.8f,%.8f,%.8f,%.3f%n",
+                                            n, stats.trials(), stats.mean(),
+                                            stats.stddev(), stats.confidenceLo(),
+                                            stats.confidenceHi(), seconds);
+                out.write(line.getBytes(StandardCharsets.US_ASCII));
+            }
+            else {
+                out.writeInt(n);
+                out.writeInt(stats.trials());
+                out.writeDouble(stats.mean());
+                out.writeDouble(stats.stddev());
+                out.writeDouble(seconds);
+            }
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the result of n = " + n, e);
+        }
+    }
+
+    /**
+     * Parses a list of grid sizes, 50,100,200, or a geometric range
+     * from:to:count of count sizes from from to to with a constant ratio.
+     *
+     * @param spec is the list or the range
+     * @return the distinct sizes, in increasing order
+     * @throws IllegalArgumentException if spec is neither
+     */
+    public static int[] parseSizes(String spec) {
+
+        String[] range = spec.split(":");
+        if (range.length == 1) {
+            return Arrays.stream(spec.split(","))
+                         .mapToInt(size -> Integer.parseInt(size.trim()))
+                         .sorted().distinct().toArray();
+        }
+
+        if (range.length != 3) {
+            throw new IllegalArgumentException(spec + " is not a list or from:to:count");
+        }
+
+        int from = Integer.parseInt(range[0]);
+        int to = Integer.parseInt(range[1]);
+        int count = Integer.parseInt(range[2]);
+        if (from <= 0 || to < from || count <= 0) {
+            throw new IllegalArgumentException(spec + " is not a valid range");
+        }
+
+        int[] sizes = new int[count];
+        double ratio = count == 1 ? 1 : Math.pow((double) to / from, 1.0 / (count - 1));
+        for (int i = 0; i < count; i++) {
+            sizes[i] = (int) Math.round(from * Math.pow(ratio, i));
+        }
+        sizes[count - 1] = to;
+        return Arrays.stream(sizes).sorted().distinct().toArray();
+    }
+
+    /**
+     * Sweeps the grid sizes given on the command line.
+     *
+     * @param args the command-line arguments: sizes, trials, backend, seed,
+     *             threads, estimator, format and output file
+     */
+    public static void main(String[] args) throws IOException {
+
+        int[] sizes = parseSizes(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        IntFunction<PercolationModel> backend =
+                PercolationStats.backend(args.length > 2 ? args[2] : "percolation");
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+                                      : Runtime.getRuntime().availableProcessors();
+        PercolationStats.Estimator estimator = args.length > 5
+                ? PercolationStats.Estimator.valueOf(args[5].toUpperCase())
+                : PercolationStats.Estimator.PLAIN;
+        Format format = args.length > 6 ? Format.valueOf(args[6].toUpperCase())
+                                        : Format.CSV;
+
+        if (args.length > 7) {
+            try (OutputStream out = Files.newOutputStream(Path.of(args[7]))) {
+                sweep(sizes, trials, backend, seed, threads, estimator, format, out);
+            }
+        }
+        else {
+            sweep(sizes, trials, backend, seed, threads, estimator, format, System.out);
+        }
+    }
+}
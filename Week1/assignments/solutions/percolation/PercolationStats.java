@@ -1,14 +1,55 @@
 /******************************************************************************
  *  Compilation:  javac PercolationStats.java
- *  Execution:    java PercolationStats n trials
- *  Dependencies: algs4/StdOut.java StdRandom.java StdStats.java
- *                Stopwatch.java Percolation.java
+ *  Execution:    java PercolationStats n trials|half-width
+ *                                    [percolation|flat|bitset]
+ *                                    [seed [threads [estimator [log-file]]]]
+ *  Dependencies: algs4/StdOut.java StdRandom.java Stopwatch.java
+ *                Percolation.java FlatPercolation.java
+ *                BitsetPercolation.java SitePermutation.java
+ *                RunningStats.java EstimatorReport.java
+ *                PercolationCounters.java PercolationTrialEvent.java
+ *                TrialLog.java
  *
  *  The PercolationStats class performs a series of computational experiments
  *  on an n-by-n grid to determine the percolation threshold. It takes n and
  *  trials as command-line arguments and runs trials number of experiments on
  *  an n-by-n grid. It calculates the mean, standard deviation, and 95%
- *  confidence interval of the percolation threshold.
+ *  confidence interval of the percolation threshold. The optional third
+ *  argument selects the percolation backend (default: percolation).
+ *
+ *  Each trial opens sites in the order of a random permutation of the n^2
+ *  sites, so no draw is wasted on a site that is already open. Each worker
+ *  reuses one percolation system across its trials, resetting it in time
+ *  proportional to the number of sites opened by the previous trial, or
+ *  for the bitset backend to the n^2 / 64 words of its bitset.
+ *
+ *  When a seed is given, the trials are split across a fork-join pool of
+ *  threads workers (default: all cores). Each trial draws from its own
+ *  SplittableRandom stream derived from the seed and the trial index, so
+ *  the results are bit-for-bit identical for any number of threads.
+ *
+ *  Instead of a number of trials, the second argument may be a target
+ *  half-width of the 95% confidence interval (any value with a decimal
+ *  point, e.g. 0.0005). Trials then run in parallel rounds until
+ *  1.96 * stddev / sqrt(T) is below the target. The mean and standard
+ *  deviation are always kept online (RunningStats), in trial order, and
+ *  trials run in blocks of at most 65536, so memory does not grow with the
+ *  number of trials.
+ *
+ *  The last argument selects the estimator (plain or control_variate; see
+ *  Estimator). Each trial then yields one independent estimate, and stddev
+ *  and the confidence interval are computed over these estimates.
+ *  EstimatorReport measures the effective-sample-size gain of each
+ *  estimator over plain Monte Carlo per unit of work.
+ *
+ *  Every trial is timed in a PercolationTrialEvent for JDK Flight Recorder,
+ *  and with -Dpercolation.counters=true the work counts of the backend are
+ *  added to the PercolationCounters totals, which can be polled while the
+ *  run is in progress.
+ *
+ *  With a log file, every finished trial is appended to a TrialLog, and a
+ *  pre-empted run started again with the same arguments skips the trials
+ *  in the log and ends with the same statistics as an uninterrupted run.
  *
  *  % java PercolationStats 200 100
  *  mean                    = 0.5929934999999997
@@ -18,14 +59,94 @@
  ******************************************************************************/
 
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
 
 public class PercolationStats {
 
     private static final double CONFIDENCE_95 = 1.96;
-    private int trials;
-    private int n;
-    private double[] pThresholds;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // trials in the first round of a run to a target precision, enough for a
+    // first estimate of the standard deviation
+    private static final int MIN_ROUND = 32;
+
+    // trials whose thresholds are held at once before being added to the
+    // statistics, which bounds the memory of a run of any length
+    private static final int BLOCK = 1 << 16;
+
+    private final int n;
+    private final Estimator estimator;
+    private final RunningStats stats = new RunningStats();
+
+    // log of the finished trials to resume from, or null
+    private final TrialLog log;
+
+    /**
+     * The estimators of the percolation threshold. Each trial yields one
+     * independent, unbiased estimate, and the statistics and confidence
+     * interval are computed over these estimates, so they stay correct for
+     * every estimator.
+     */
+    public enum Estimator {
+
+        /**
+         * Plain Monte Carlo: the threshold of one random site order.
+         */
+        PLAIN(0),
+
+        /**
+         * Control variate: the horizontal crossing threshold, recorded by the
+         * same run, has the same mean as the vertical one by symmetry, so
+         * their difference is a control with known mean 0. The optimal
+         * coefficient is 1/2 by the same symmetry, which makes the estimate
+         * the average of the two thresholds. Costs one run, continued until
+         * both crossings exist.
+         */
+        CONTROL_VARIATE(3);
+
+        // the number that stands for the estimator in trial logs, sweep files
+        // and the cluster protocol; it never changes when estimators are
+        // added or removed, and codes 1 and 2 stay retired
+        private final int code;
+
+        Estimator(int code) {
+
+            this.code = code;
+        }
+
+        /**
+         * Returns the stable code of the estimator, which files and sockets
+         * store instead of the ordinal.
+         *
+         * @return the code of the estimator
+         */
+        public int code() {
+
+            return code;
+        }
+
+        /**
+         * Returns the estimator with a stable code.
+         *
+         * @param code is the code of an estimator
+         * @return the estimator with that code
+         * @throws IllegalArgumentException if no estimator has the code
+         */
+        public static Estimator fromCode(int code) {
+
+            for (Estimator estimator : values()) {
+                if (estimator.code == code) {
+                    return estimator;
+                }
+            }
+            throw new IllegalArgumentException("Unknown estimator code " + code);
+        }
+    }
 
     /**
      * Performs trials number of experiments on an n-by-n grid
@@ -36,6 +157,616 @@ public class PercolationStats {
      */
     public PercolationStats(int n, int trials) {
 
+        this(n, trials, Percolation::new);
+    }
+
+    /**
+     * Performs trials number of experiments on an n-by-n grid using the given
+     * percolation backend
+     *
+     * @param n       is the size of the grid
+     * @param trials  is the number of experiments
+     * @param backend creates an n-by-n percolation system for each trial
+     * @throws IllegalArgumentException if n or trials < 0
+     */
+    public PercolationStats(int n, int trials,
+                            IntFunction<? extends PercolationModel> backend) {
+
+        this(n, trials, backend, StdRandom.uniformLong(Long.MAX_VALUE), 1);
+    }
+
+    /**
+     * Performs trials number of reproducible experiments on an n-by-n grid,
+     * split across parallelism worker threads
+     *
+     * @param n           is the size of the grid
+     * @param trials      is the number of experiments
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @throws IllegalArgumentException if n, trials or parallelism < 0
+     */
+    public PercolationStats(int n, int trials, long seed, int parallelism) {
+
+        this(n, trials, Percolation::new, seed, parallelism);
+    }
+
+    /**
+     * Performs trials number of reproducible experiments on an n-by-n grid
+     * using the given percolation backend, split across parallelism worker
+     * threads. Trial i always draws from the same random stream, so the
+     * thresholds do not depend on the number of threads.
+     *
+     * @param n           is the size of the grid
+     * @param trials      is the number of experiments
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @throws IllegalArgumentException if n, trials or parallelism < 0
+     */
+    public PercolationStats(int n, int trials,
+                            IntFunction<? extends PercolationModel> backend,
+                            long seed, int parallelism) {
+
+        this(n, trials, backend, seed, parallelism, Estimator.PLAIN);
+    }
+
+    /**
+     * Performs trials number of reproducible experiments on an n-by-n grid
+     * using the given percolation backend and threshold estimator, split
+     * across parallelism worker threads.
+     *
+     * @param n           is the size of the grid
+     * @param trials      is the number of experiments
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @param estimator   is the estimator each trial uses
+     * @throws IllegalArgumentException if n, trials or parallelism < 0
+     */
+    public PercolationStats(int n, int trials,
+                            IntFunction<? extends PercolationModel> backend,
+                            long seed, int parallelism, Estimator estimator) {
+
+        this(n, 0, trials, backend, seed, parallelism, estimator, null);
+    }
+
+    /**
+     * Performs the reproducible experiments in [from, to), as above, skipping
+     * the trials the log records as completed and appending the others to it.
+     *
+     * @param n           is the size of the grid
+     * @param from        is the index of the first trial
+     * @param to          is one past the index of the last trial
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @param estimator   is the estimator each trial uses
+     * @param log         is the log of the finished trials, or null
+     * @throws IllegalArgumentException if n, to - from or parallelism < 0
+     */
+    private PercolationStats(int n, int from, int to,
+                             IntFunction<? extends PercolationModel> backend,
+                             long seed, int parallelism, Estimator estimator,
+                             TrialLog log) {
+
+        validate(n, to - from);
+        validateParallelism(parallelism);
+
+        this.n = n;
+        this.estimator = estimator;
+        this.log = log;
+        ForkJoinPool pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        try {
+            runTrials(pool, parallelism, backend, seed, from, to);
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Performs reproducible experiments on an n-by-n grid until the 95%
+     * confidence interval is at most halfWidth on either side of the mean.
+     *
+     * @param n           is the size of the grid
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @param halfWidth   is the target half-width of the confidence interval
+     * @param estimator   is the estimator each trial uses
+     * @param log         is the log of the finished trials, or null
+     */
+    private PercolationStats(int n,
+                             IntFunction<? extends PercolationModel> backend,
+                             long seed, int parallelism, double halfWidth,
+                             Estimator estimator, TrialLog log) {
+
+        this.n = n;
+        this.estimator = estimator;
+        this.log = log;
+        ForkJoinPool pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        try {
+            int round = MIN_ROUND;
+            while (true) {
+                int done = trials();
+                runTrials(pool, parallelism, backend, seed, done, done + round);
+                if (halfWidth() <= halfWidth || trials() == Integer.MAX_VALUE) {
+                    break;
+                }
+
+                // size the next round from the current estimate of the trials
+                // needed, at most doubling the trials run so far
+                double needed = Math.ceil(Math.pow(
+                        CONFIDENCE_95 * stddev() / halfWidth, 2));
+                round = (int) Math.min(Math.min(trials(), Integer.MAX_VALUE - trials()),
+                                       Math.max(MIN_ROUND, needed - trials()));
+            }
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Creates the statistics of a run from the merged partial sums of its
+     * trials, as computed by the workers of a PercolationCluster.
+     *
+     * @param n         is the size of the grid
+     * @param estimator is the estimator each trial used
+     * @param merged    are the partial sums of all trials
+     */
+    private PercolationStats(int n, Estimator estimator, RunningStats merged) {
+
+        this.n = n;
+        this.estimator = estimator;
+        this.log = null;
+        stats.merge(merged);
+    }
+
+    /**
+     * Returns the statistics of a run whose trials were split into shards,
+     * from the partial sums of the shards merged together.
+     *
+     * @param n         is the size of the grid
+     * @param estimator is the estimator each trial used
+     * @param merged    are the partial sums of all trials
+     * @return the statistics of the run
+     * @throws IllegalArgumentException if n <= 0 or merged is empty
+     */
+    static PercolationStats fromPartialSums(int n, Estimator estimator,
+                                            RunningStats merged) {
+
+        validate(n, (int) Math.min(merged.count(), Integer.MAX_VALUE));
+        return new PercolationStats(n, estimator, merged);
+    }
+
+    /**
+     * Performs the reproducible experiments in [from, to), one shard of a
+     * larger run, and returns their partial sums. Trial i draws from the same
+     * random stream as in a run of all trials. With parallelism 1 the trials
+     * run one after the other in the calling thread, without forking.
+     *
+     * @param n           is the size of the grid
+     * @param from        is the index of the first trial
+     * @param to          is one past the index of the last trial
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @param estimator   is the estimator each trial uses
+     * @return the count, mean and M2 of the estimates of the shard
+     * @throws IllegalArgumentException if n, to - from or parallelism <= 0
+     */
+    static RunningStats shard(int n, int from, int to,
+                              IntFunction<? extends PercolationModel> backend,
+                              long seed, int parallelism, Estimator estimator) {
+
+        if (from < 0) {
+            throw new IllegalArgumentException("First trial cannot be negative");
+        }
+
+        return new PercolationStats(n, from, to, backend, seed, parallelism,
+                                    estimator, null).stats;
+    }
+
+    /**
+     * Performs reproducible experiments on an n-by-n grid using the given
+     * percolation backend, in parallel rounds, until the 95% confidence
+     * interval is at most halfWidth on either side of the mean. Statistics
+     * are kept online, so memory does not grow with the number of trials.
+     * The rounds depend only on the thresholds, so the result does not
+     * depend on the number of threads.
+     *
+     * @param n           is the size of the grid
+     * @param halfWidth   is the target half-width of the confidence interval
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @return the statistics of all trials run
+     * @throws IllegalArgumentException if n, halfWidth or parallelism <= 0
+     */
+    public static PercolationStats toHalfWidth(
+            int n, double halfWidth, IntFunction<? extends PercolationModel> backend,
+            long seed, int parallelism) {
+
+        return toHalfWidth(n, halfWidth, backend, seed, parallelism,
+                           Estimator.PLAIN);
+    }
+
+    /**
+     * Performs reproducible experiments on an n-by-n grid, as above, using
+     * the given threshold estimator for each trial.
+     *
+     * @param n           is the size of the grid
+     * @param halfWidth   is the target half-width of the confidence interval
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @param estimator   is the estimator each trial uses
+     * @return the statistics of all trials run
+     * @throws IllegalArgumentException if n, halfWidth or parallelism <= 0
+     */
+    public static PercolationStats toHalfWidth(
+            int n, double halfWidth, IntFunction<? extends PercolationModel> backend,
+            long seed, int parallelism, Estimator estimator) {
+
+        validate(n, 1);
+        validateParallelism(parallelism);
+
+        if (!(halfWidth > 0)) {
+            throw new IllegalArgumentException("Half-width must be greater than 0");
+        }
+
+        return new PercolationStats(n, backend, seed, parallelism, halfWidth,
+                                    estimator, null);
+    }
+
+    /**
+     * Performs trials number of reproducible experiments, as in the
+     * constructor, recording every finished trial in a log file. If the run
+     * was interrupted, running it again with the same arguments resumes it:
+     * the trials completed in the log are not run again, and the statistics
+     * are the same as those of an uninterrupted run.
+     *
+     * @param n           is the size of the grid
+     * @param trials      is the number of experiments
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @param estimator   is the estimator each trial uses
+     * @param logFile     is the log of the finished trials
+     * @return the statistics of all trials
+     * @throws IllegalArgumentException if n, trials or parallelism < 0, or if
+     *                                  the log belongs to another run
+     * @throws java.io.UncheckedIOException if the log cannot be read or written
+     */
+    public static PercolationStats resumable(
+            int n, int trials, IntFunction<? extends PercolationModel> backend,
+            long seed, int parallelism, Estimator estimator, Path logFile) {
+
+        validate(n, trials);
+        validateParallelism(parallelism);
+
+        try (TrialLog log = new TrialLog(logFile, n, seed, estimator)) {
+            return new PercolationStats(n, 0, trials, backend, seed, parallelism,
+                                        estimator, log);
+        }
+    }
+
+    /**
+     * Performs reproducible experiments until the 95% confidence interval is
+     * at most halfWidth on either side of the mean, as in toHalfWidth,
+     * recording every finished trial in a log file from which an interrupted
+     * run resumes with the same result.
+     *
+     * @param n           is the size of the grid
+     * @param halfWidth   is the target half-width of the confidence interval
+     * @param backend     creates an n-by-n percolation system for each trial
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @param estimator   is the estimator each trial uses
+     * @param logFile     is the log of the finished trials
+     * @return the statistics of all trials run
+     * @throws IllegalArgumentException if n, halfWidth or parallelism <= 0, or
+     *                                  if the log belongs to another run
+     * @throws java.io.UncheckedIOException if the log cannot be read or written
+     */
+    public static PercolationStats resumableToHalfWidth(
+            int n, double halfWidth, IntFunction<? extends PercolationModel> backend,
+            long seed, int parallelism, Estimator estimator, Path logFile) {
+
+        validate(n, 1);
+        validateParallelism(parallelism);
+
+        if (!(halfWidth > 0)) {
+            throw new IllegalArgumentException("Half-width must be greater than 0");
+        }
+
+        try (TrialLog log = new TrialLog(logFile, n, seed, estimator)) {
+            return new PercolationStats(n, backend, seed, parallelism, halfWidth,
+                                        estimator, log);
+        }
+    }
+
+    /**
+     * Runs the trials in [from, to) and adds their thresholds to the
+     * statistics in trial order. The trials run in blocks of at most BLOCK,
+     * each split across the pool if there is one, or else run one after the
+     * other in this thread, without forking any task. The thresholds of the
+     * trials the log records as completed are read back from it a block at
+     * a time.
+     *
+     * @param pool        is the pool to run in, or null to run in this thread
+     * @param parallelism is the number of worker threads
+     * @param backend     creates an n-by-n percolation system
+     * @param seed        is the master seed the trial random streams derive from
+     * @param from        is the index of the first trial
+     * @param to          is one past the index of the last trial
+     */
+    private void runTrials(ForkJoinPool pool, int parallelism,
+                           IntFunction<? extends PercolationModel> backend,
+                           long seed, int from, int to) {
+
+        double[] thresholds = new double[Math.min(BLOCK, to - from)];
+        for (int start = from; start < to; start += Math.min(BLOCK, to - start)) {
+            int end = start + Math.min(BLOCK, to - start);
+            if (log != null) {
+                log.readThresholds(start, end, thresholds, start);
+            }
+            if (pool == null) {
+                runBatch(backend, seed, start, end, thresholds, start);
+            }
+            else {
+                // a few batches per worker keep the load balanced, while every
+                // batch reuses one percolation system and one site permutation
+                int batch = Math.max(1, (end - start) / (4 * parallelism));
+                pool.invoke(new TrialTask(backend, seed, batch, start, end,
+                                          thresholds));
+            }
+
+            for (int i = 0; i < end - start; i++) {
+                stats.add(thresholds[i]);
+            }
+        }
+    }
+
+    /**
+     * Fork-join task that runs the trials in [from, to), splitting the range
+     * in halves until at most batch trials are left. The trials of a batch
+     * share one percolation system and one site permutation, which are reset
+     * between trials instead of being reallocated.
+     */
+    @SuppressWarnings("serial") // tasks are never serialized
+    private class TrialTask extends RecursiveAction {
+
+        private final IntFunction<? extends PercolationModel> backend;
+        private final long seed;
+        private final int batch;
+        private final int from;
+        private final int to;
+        private final double[] thresholds;
+        private final int offset;
+
+        TrialTask(IntFunction<? extends PercolationModel> backend, long seed,
+                  int batch, int from, int to, double[] thresholds) {
+
+            this(backend, seed, batch, from, to, thresholds, from);
+        }
+
+        private TrialTask(IntFunction<? extends PercolationModel> backend,
+                          long seed, int batch, int from, int to,
+                          double[] thresholds, int offset) {
+
+            this.backend = backend;
+            this.seed = seed;
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.thresholds = thresholds;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= batch) {
+                runBatch(backend, seed, from, to, thresholds, offset);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new TrialTask(backend, seed, batch, from, mid, thresholds, offset),
+                      new TrialTask(backend, seed, batch, mid, to, thresholds, offset));
+        }
+    }
+
+    /**
+     * Runs the trials in [from, to) in this thread, on one percolation system
+     * and one site permutation that are reset between trials. Trials the log
+     * records as completed are skipped, as runTrials has read their
+     * thresholds from it.
+     *
+     * @param backend    creates an n-by-n percolation system
+     * @param seed       is the master seed the trial random streams derive from
+     * @param from       is the index of the first trial
+     * @param to         is one past the index of the last trial
+     * @param thresholds receives the estimate of trial i at i - offset
+     * @param offset     is the index of the trial at thresholds[0]
+     */
+    private void runBatch(IntFunction<? extends PercolationModel> backend,
+                          long seed, int from, int to, double[] thresholds,
+                          int offset) {
+
+        PercolationModel percolation = backend.apply(n);
+        SitePermutation sites = new SitePermutation(n * n);
+        for (int i = from; i < to; i++) {
+            if (log != null && log.isCompleted(i)) {
+                continue;
+            }
+
+            long start = log != null ? System.nanoTime() : 0;
+            SplittableRandom random = new SplittableRandom(trialSeed(seed, i));
+            thresholds[i - offset] = recordedEstimate(percolation, sites, random, i);
+            if (log != null) {
+                log.append(i, thresholds[i - offset], System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Computes the estimate of one trial, timing it in a PercolationTrialEvent
+     * and, if counting is enabled, adding its counters to the totals.
+     *
+     * @param percolation is an n-by-n percolation system with all sites blocked
+     * @param sites       is a permutation of the n * n sites with none drawn
+     * @param random      is the random stream of this trial
+     * @param trial       is the index of the trial
+     * @return the estimate of the percolation threshold
+     */
+    private double recordedEstimate(PercolationModel percolation,
+                                    SitePermutation sites,
+                                    SplittableRandom random, int trial) {
+
+        PercolationTrialEvent event = new PercolationTrialEvent();
+        event.begin();
+        long start = PercolationCounters.ENABLED ? System.nanoTime() : 0;
+
+        double estimate = estimate(percolation, sites, random);
+
+        event.end();
+        PercolationCounters counters = percolation.counters();
+        if (event.shouldCommit()) {
+            event.n = n;
+            event.trial = trial;
+            event.backend = percolation.getClass().getSimpleName();
+            event.estimate = estimate;
+            event.opens = counters.opens();
+            event.redundantOpens = counters.redundantOpens();
+            event.finds = counters.finds();
+            event.findSteps = counters.findSteps();
+            event.unions = counters.unions();
+            event.commit();
+        }
+        if (PercolationCounters.ENABLED) {
+            counters.endTrial(System.nanoTime() - start);
+        }
+        return estimate;
+    }
+
+    /**
+     * Computes the estimate of one trial with the estimator of this run. The
+     * percolation system and the permutation are left reset.
+     *
+     * @param percolation is an n-by-n percolation system with all sites blocked
+     * @param sites       is a permutation of the n * n sites with none drawn
+     * @param random      is the random stream of this trial
+     * @return the estimate of the percolation threshold
+     */
+    private double estimate(PercolationModel percolation, SitePermutation sites,
+                            SplittableRandom random) {
+
+        double gridSize = (double) n * n;
+        double estimate;
+        switch (estimator) {
+
+            case CONTROL_VARIATE:
+                int vertical = 0;
+                int horizontal = 0;
+                while (vertical == 0 || horizontal == 0) {
+                    percolation.openBlockedSite(sites.next(random));
+                    if (vertical == 0 && percolation.percolates()) {
+                        vertical = sites.drawn();
+                    }
+                    if (horizontal == 0 && percolation.percolatesHorizontally()) {
+                        horizontal = sites.drawn();
+                    }
+                }
+                estimate = (vertical + horizontal) / (2 * gridSize);
+                break;
+
+            default:
+                estimate = threshold(percolation, sites, n, random);
+                break;
+        }
+
+        percolation.reset();
+        sites.reset();
+        return estimate;
+    }
+
+    /**
+     * Opens sites in a random order until the system percolates. Sites are
+     * drawn from a random permutation, so every draw opens a blocked site
+     * and goes through the unchecked open path.
+     *
+     * @param percolation is an n-by-n percolation system with the drawn sites
+     *                    of the permutation open
+     * @param sites       is a permutation of the n * n sites
+     * @param n           is the size of the grid
+     * @param random      is the random stream of this trial
+     * @return the fraction of open sites when the system percolates
+     */
+    private static double threshold(PercolationModel percolation,
+                                    SitePermutation sites, int n,
+                                    SplittableRandom random) {
+
+        while (!percolation.percolates()) {
+            percolation.openBlockedSite(sites.next(random));
+        }
+        return (double) sites.drawn() / ((double) n * n);
+    }
+
+    /**
+     * Derives the seed of a trial's random stream from the master seed, so
+     * any trial can be replayed on its own.
+     *
+     * @param seed  is the master seed
+     * @param trial is the index of the trial
+     * @return the seed of the trial's random stream
+     */
+    static long trialSeed(long seed, int trial) {
+
+        // Stafford's variant 13 of the MurmurHash3 finalizer, as used by
+        // SplittableRandom, applied to a Weyl sequence over the trial index
+        long z = seed + (trial + 1L) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the percolation backend of the given name.
+     *
+     * @param name is percolation, flat or bitset
+     * @return a factory of n-by-n percolation systems of that backend
+     * @throws IllegalArgumentException if there is no backend of that name
+     */
+    static IntFunction<PercolationModel> backend(String name) {
+
+        switch (name) {
+            case "percolation":
+                return Percolation::new;
+            case "flat":
+                return FlatPercolation::new;
+            case "bitset":
+                return BitsetPercolation::new;
+            default:
+                throw new IllegalArgumentException("Unknown backend " + name);
+        }
+    }
+
+    /**
+     * Validates the grid size and the number of trials.
+     *
+     * @param n      is the size of the grid
+     * @param trials is the number of experiments
+     * @throws IllegalArgumentException if n or trials < 0
+     */
+    private static void validate(int n, int trials) {
+
         if (n <= 0) {
             throw new IllegalArgumentException("Grid size must be greater than 0");
         }
@@ -43,30 +774,29 @@ public class PercolationStats {
         if (trials <= 0) {
             throw new IllegalArgumentException("Number of trials must be greater than 0");
         }
+    }
 
-        this.trials = trials;
-        this.n = n;
-        pThresholds = new double[trials];
+    /**
+     * Validates the number of worker threads.
+     *
+     * @param parallelism is the number of worker threads
+     * @throws IllegalArgumentException if parallelism < 0
+     */
+    private static void validateParallelism(int parallelism) {
 
-        // Run trials number of experiments on an n-by-n grid
-        Percolation percolation;
-        for (int i = 0; i < trials; i++) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+    }
 
-            percolation = new Percolation(n);
-            int openSites = 0;
-            int gridSize = n * n;
-            while (!percolation.percolates()) {
+    /**
+     * Number of experiments performed
+     *
+     * @return the number of trials
+     */
+    public int trials() {
 
-                int row = StdRandom.uniformInt(1, n + 1);
-                int col = StdRandom.uniformInt(1, n + 1);
-                if (percolation.isOpen(row, col)) {
-                    continue;
-                }
-                percolation.open(row, col);
-                openSites++;
-            }
-            pThresholds[i] = (double) openSites / gridSize;
-        }
+        return (int) stats.count();
     }
 
     /**
@@ -76,17 +806,17 @@ public class PercolationStats {
      */
     public double mean() {
 
-        return StdStats.mean(pThresholds);
+        return stats.mean();
     }
 
     /**
      * Sample standard deviation of percolation threshold
      *
-     * @return the standard deviation of the percolation thresholds
+     * @return the standard deviation of the per-trial threshold estimates
      */
     public double stddev() {
 
-        return StdStats.stddev(pThresholds);
+        return stats.stddev();
     }
 
     /**
@@ -96,7 +826,7 @@ public class PercolationStats {
      */
     public double confidenceLo() {
 
-        return (mean() - (CONFIDENCE_95 * stddev()) / Math.sqrt(trials));
+        return (mean() - halfWidth());
     }
 
     /**
@@ -106,7 +836,17 @@ public class PercolationStats {
      */
     public double confidenceHi() {
 
-        return (mean() + (CONFIDENCE_95 * stddev()) / Math.sqrt(trials));
+        return (mean() + halfWidth());
+    }
+
+    /**
+     * Half-width of the 95% confidence interval
+     *
+     * @return the distance from the mean to either endpoint
+     */
+    private double halfWidth() {
+
+        return (CONFIDENCE_95 * stddev()) / Math.sqrt(trials());
     }
 
     /**
@@ -117,9 +857,40 @@ public class PercolationStats {
     public static void main(String[] args) {
 
         int n = Integer.parseInt(args[0]);
-        int trials = Integer.parseInt(args[1]);
+        boolean toHalfWidth = args[1].contains(".");
+        IntFunction<PercolationModel> factory =
+                backend(args.length > 2 ? args[2] : "percolation");
+
+        long seed = args.length > 3 ? Long.parseLong(args[3])
+                                    : StdRandom.uniformLong(Long.MAX_VALUE);
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+                                      : Runtime.getRuntime().availableProcessors();
+        Estimator estimator = args.length > 5
+                ? Estimator.valueOf(args[5].toUpperCase()) : Estimator.PLAIN;
 
-        PercolationStats pStats = new PercolationStats(n, trials);
+        Path logFile = args.length > 6 ? Path.of(args[6]) : null;
+
+        PercolationStats pStats;
+        if (toHalfWidth) {
+            double halfWidth = Double.parseDouble(args[1]);
+            pStats = logFile != null
+                    ? PercolationStats.resumableToHalfWidth(n, halfWidth, factory, seed,
+                                                            threads, estimator, logFile)
+                    : PercolationStats.toHalfWidth(n, halfWidth, factory, seed,
+                                                   threads, estimator);
+            System.out.println("trials                  = " + pStats.trials());
+        }
+        else if (logFile != null) {
+            pStats = PercolationStats.resumable(n, Integer.parseInt(args[1]), factory,
+                                                seed, threads, estimator, logFile);
+        }
+        else if (args.length > 3) {
+            pStats = new PercolationStats(n, Integer.parseInt(args[1]), factory,
+                                          seed, threads, estimator);
+        }
+        else {
+            pStats = new PercolationStats(n, Integer.parseInt(args[1]), factory);
+        }
 
         System.out.println("mean                    = " + pStats.mean());
         System.out.println("stddev                  = " + pStats.stddev());
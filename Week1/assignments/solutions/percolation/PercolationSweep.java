@@ -0,0 +1,335 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationSweep.java
+ *  Execution:    java PercolationSweep n trials [pmin pmax points]
+ *  Dependencies: algs4/StdRandom.java Percolation.java SitePermutation.java
+ *                PercolationStats.java
+ *
+ *  The PercolationSweep class computes whole percolation curves with the
+ *  Newman-Ziff algorithm. Each trial opens all n^2 sites of a grid in a
+ *  random order, one Percolation.open at a time, and after the k-th open
+ *  records the observables of the configuration with exactly k open sites:
+ *  whether the system percolates and the size of the largest cluster (the
+ *  number of open sites is k itself). Averaging over trials gives the
+ *  observables Q(k) for every k, and the curve at any site vacancy
+ *  probability p is the binomial convolution
+ *
+ *      Q(p) = sum_k C(N, k) p^k (1 - p)^(N - k) Q(k),   N = n^2
+ *
+ *  so one pass per trial replaces a separate experiment per value of p.
+ *  Trials are seeded and split across a fork-join pool exactly as in
+ *  PercolationStats, so the curve does not depend on the number of threads.
+ *
+ *  % java PercolationSweep 100 200 0.55 0.65 6
+ *  p         P(percolates)   largest cluster
+ *  0.550     0.003833        0.069275
+ *  0.570     0.102328        0.133836
+ *  0.590     0.430586        0.251170
+ *  0.610     0.837593        0.413698
+ *  0.630     0.991370        0.535512
+ *  0.650     1.000000        0.597286
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+public class PercolationSweep {
+
+    // binomial weights below this fraction of the weight at the mode are
+    // too small to change a double result
+    private static final double NEGLIGIBLE_WEIGHT = 1e-17;
+
+    private final int n;
+    private final int sites;
+    private final int trials;
+
+    // percolating[k] is the number of trials that percolate with k open sites
+    private final long[] percolating;
+
+    // largestCluster[k] is the sum over trials of the largest cluster size
+    // with k open sites
+    private final long[] largestCluster;
+
+    /**
+     * Runs trials sweeps over an n-by-n grid, split across parallelism worker
+     * threads
+     *
+     * @param n           is the size of the grid
+     * @param trials      is the number of sweeps
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @throws IllegalArgumentException if n, trials or parallelism < 0
+     */
+    public PercolationSweep(int n, int trials, long seed, int parallelism) {
+
+        this(n, trials, Percolation::new, seed, parallelism);
+    }
+
+    /**
+     * Runs trials sweeps over an n-by-n grid using the given percolation
+     * backend, split across parallelism worker threads
+     *
+     * @param n           is the size of the grid
+     * @param trials      is the number of sweeps
+     * @param backend     creates an n-by-n percolation system
+     * @param seed        is the master seed the trial random streams derive from
+     * @param parallelism is the number of worker threads
+     * @throws IllegalArgumentException if n, trials or parallelism < 0
+     */
+    public PercolationSweep(int n, int trials,
+                            IntFunction<? extends PercolationModel> backend,
+                            long seed, int parallelism) {
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("Grid size must be greater than 0");
+        }
+
+        if (trials <= 0) {
+            throw new IllegalArgumentException("Number of trials must be greater than 0");
+        }
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+
+        this.n = n;
+        this.sites = n * n;
+        this.trials = trials;
+        percolating = new long[sites + 1];
+        largestCluster = new long[sites + 1];
+
+        // without a pool, run every sweep in this thread, without forking
+        if (parallelism == 1) {
+            runBatch(backend, seed, 0, trials);
+        }
+        else {
+            int batch = Math.max(1, trials / (4 * parallelism));
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new SweepTask(backend, seed, batch, 0, trials));
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+
+        // a system that percolates keeps percolating as more sites open
+        for (int k = 1; k <= sites; k++) {
+            percolating[k] += percolating[k - 1];
+        }
+    }
+
+    /**
+     * Fork-join task that runs the sweeps in [from, to), splitting the range
+     * in halves until at most batch sweeps are left.
+     */
+    @SuppressWarnings("serial") // tasks are never serialized
+    private class SweepTask extends RecursiveAction {
+
+        private final IntFunction<? extends PercolationModel> backend;
+        private final long seed;
+        private final int batch;
+        private final int from;
+        private final int to;
+
+        SweepTask(IntFunction<? extends PercolationModel> backend, long seed,
+                  int batch, int from, int to) {
+
+            this.backend = backend;
+            this.seed = seed;
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > batch) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SweepTask(backend, seed, batch, from, mid),
+                          new SweepTask(backend, seed, batch, mid, to));
+                return;
+            }
+
+            runBatch(backend, seed, from, to);
+        }
+    }
+
+    /**
+     * Runs the sweeps in [from, to) in this thread. The batch accumulates
+     * into its own arrays and merges them once at the end.
+     *
+     * @param backend creates an n-by-n percolation system
+     * @param seed    is the master seed the trial random streams derive from
+     * @param from    is the index of the first sweep
+     * @param to      is one past the index of the last sweep
+     */
+    private void runBatch(IntFunction<? extends PercolationModel> backend,
+                          long seed, int from, int to) {
+
+        PercolationModel percolation = backend.apply(n);
+        SitePermutation permutation = new SitePermutation(sites);
+        long[] firstPercolating = new long[sites + 1];
+        long[] largest = new long[sites + 1];
+
+        for (int i = from; i < to; i++) {
+            SplittableRandom random =
+                    new SplittableRandom(PercolationStats.trialSeed(seed, i));
+            sweep(percolation, permutation, random, firstPercolating, largest);
+            percolation.reset();
+            permutation.reset();
+        }
+
+        synchronized (percolating) {
+            for (int k = 0; k <= sites; k++) {
+                percolating[k] += firstPercolating[k];
+                largestCluster[k] += largest[k];
+            }
+        }
+    }
+
+    /**
+     * Opens every site in a random order, recording the observables after
+     * each open.
+     *
+     * @param percolation      is an n-by-n system with all sites blocked
+     * @param permutation      is a permutation of the sites with none drawn
+     * @param random           is the random stream of this trial
+     * @param firstPercolating counts, per k, the trials that start to
+     *                         percolate at the k-th open
+     * @param largest          sums, per k, the largest cluster size
+     */
+    private void sweep(PercolationModel percolation, SitePermutation permutation,
+                       SplittableRandom random, long[] firstPercolating,
+                       long[] largest) {
+
+        int largestSize = 0;
+        boolean percolated = false;
+        for (int k = 1; k <= sites; k++) {
+
+            int site = permutation.next(random);
+            percolation.openBlockedSite(site);
+
+            // only the cluster of the new site can have grown
+            int size = percolation.clusterSize(site / n + 1, site % n + 1);
+            if (size > largestSize) {
+                largestSize = size;
+            }
+            largest[k] += largestSize;
+
+            if (!percolated && percolation.percolates()) {
+                percolated = true;
+                firstPercolating[k]++;
+            }
+        }
+    }
+
+    /**
+     * Probability that the system percolates when each site is open with
+     * probability p
+     *
+     * @param p is the site vacancy probability
+     * @return the estimated probability that the system percolates
+     * @throws IllegalArgumentException if p is not between 0 and 1
+     */
+    public double percolationProbability(double p) {
+
+        return convolve(percolating, p) / trials;
+    }
+
+    /**
+     * Expected size of the largest cluster, as a fraction of all sites, when
+     * each site is open with probability p
+     *
+     * @param p is the site vacancy probability
+     * @return the estimated fraction of sites in the largest cluster
+     * @throws IllegalArgumentException if p is not between 0 and 1
+     */
+    public double largestClusterFraction(double p) {
+
+        return convolve(largestCluster, p) / trials / sites;
+    }
+
+    /**
+     * Convolves an observable, indexed by the number of open sites, with the
+     * binomial distribution of the number of open sites. The weights are
+     * computed by recurrence outwards from the mode, where the largest weight
+     * is, and normalized at the end, which avoids overflowing C(N, k).
+     *
+     * @param observable is the observable summed over trials, for k = 0 .. N
+     * @param p          is the site vacancy probability
+     * @return the binomial average of the observable
+     * @throws IllegalArgumentException if p is not between 0 and 1
+     */
+    private double convolve(long[] observable, double p) {
+
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p " + p + " is not between 0 and 1");
+        }
+
+        if (p == 0) {
+            return observable[0];
+        }
+        if (p == 1) {
+            return observable[sites];
+        }
+
+        int mode = (int) Math.min(sites, Math.floor((sites + 1) * p));
+        double odds = p / (1 - p);
+        double total = 1;
+        double sum = observable[mode];
+
+        double weight = 1;
+        for (int k = mode; k < sites; k++) {
+            weight *= (double) (sites - k) / (k + 1) * odds;
+            if (weight < NEGLIGIBLE_WEIGHT) {
+                break;
+            }
+            total += weight;
+            sum += weight * observable[k + 1];
+        }
+
+        weight = 1;
+        for (int k = mode; k > 0; k--) {
+            weight *= (double) k / (sites - k + 1) / odds;
+            if (weight < NEGLIGIBLE_WEIGHT) {
+                break;
+            }
+            total += weight;
+            sum += weight * observable[k - 1];
+        }
+
+        return sum / total;
+    }
+
+    /**
+     * Prints the percolation curve for evenly spaced values of p.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        double pMin = args.length > 2 ? Double.parseDouble(args[2]) : 0.55;
+        double pMax = args.length > 3 ? Double.parseDouble(args[3]) : 0.65;
+        int points = args.length > 4 ? Integer.parseInt(args[4]) : 11;
+
+        PercolationSweep sweep = new PercolationSweep(
+                n, trials, StdRandom.uniformLong(Long.MAX_VALUE),
+                Runtime.getRuntime().availableProcessors());
+
+        System.out.printf("%-9s %-15s %s%n", "p", "P(percolates)", "largest cluster");
+        for (int i = 0; i < points; i++) {
+            double p = points == 1 ? pMin : pMin + (pMax - pMin) * i / (points - 1);
+            System.out.printf("%-9.3f %-15.6f %.6f%n", p,
+                              sweep.percolationProbability(p),
+                              sweep.largestClusterFraction(p));
+        }
+    }
+}
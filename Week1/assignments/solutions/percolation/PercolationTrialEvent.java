@@ -0,0 +1,58 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationTrialEvent.java
+ *  Dependencies: none
+ *
+ *  The PercolationTrialEvent class is a JDK Flight Recorder event committed
+ *  by PercolationStats for every trial, so a recording shows how long each
+ *  trial took on which backend. The work counts are those of
+ *  PercolationCounters and are zero unless counting is enabled. When no
+ *  recording is running, or the event is disabled in its settings, the
+ *  event is never committed and costs next to nothing.
+ *
+ *  % java -XX:StartFlightRecording=filename=run.jfr PercolationStats 200 1000
+ *  % jfr print --events percolation.Trial run.jfr
+ *
+ ******************************************************************************/
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("percolation.Trial")
+@Label("Percolation Trial")
+@Category("Percolation")
+@Description("One trial of a PercolationStats run")
+public class PercolationTrialEvent extends Event {
+
+    @Label("Grid Size")
+    int n;
+
+    @Label("Trial")
+    int trial;
+
+    @Label("Backend")
+    String backend;
+
+    @Label("Estimate")
+    @Description("Estimate of the percolation threshold")
+    double estimate;
+
+    @Label("Opens")
+    long opens;
+
+    @Label("Redundant Opens")
+    @Description("Opens of sites that were open already")
+    long redundantOpens;
+
+    @Label("Finds")
+    long finds;
+
+    @Label("Find Steps")
+    @Description("Parent links followed by find")
+    long findSteps;
+
+    @Label("Unions")
+    long unions;
+}
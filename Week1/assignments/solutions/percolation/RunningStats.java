@@ -0,0 +1,166 @@
+/******************************************************************************
+ *  Compilation:  javac RunningStats.java
+ *  Execution:    java RunningStats
+ *  Dependencies: none
+ *
+ *  The RunningStats class keeps the count, mean and sum of squared deviations
+ *  (M2) of a stream of values in constant memory. Values are added with
+ *  Welford's update, which avoids the cancellation of the textbook
+ *  sum-of-squares formula, and two accumulators built on disjoint parts of
+ *  the stream are combined with Chan et al.'s pairwise merge, so partial
+ *  results from parallel workers can be folded together.
+ *
+ *  % java RunningStats
+ *  mean   = 0.5
+ *  stddev = 0.31622776601683794
+ *  merged = 0.49999999999999994 0.31622776601683794
+ *
+ ******************************************************************************/
+
+public class RunningStats {
+
+    private long count;
+    private double mean;
+    private double m2;
+
+    /**
+     * Creates an empty accumulator.
+     */
+    public RunningStats() {
+
+        this(0, 0.0, 0.0);
+    }
+
+    /**
+     * Creates an accumulator from the partial sums of another one.
+     *
+     * @param count is the number of values
+     * @param mean  is the mean of the values
+     * @param m2    is the sum of squared deviations from the mean
+     * @throws IllegalArgumentException if count or m2 < 0
+     */
+    public RunningStats(long count, double mean, double m2) {
+
+        if (count < 0 || m2 < 0) {
+            throw new IllegalArgumentException("Count and M2 cannot be negative");
+        }
+
+        this.count = count;
+        this.mean = mean;
+        this.m2 = m2;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param x is the value to add
+     */
+    public void add(double x) {
+
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+    }
+
+    /**
+     * Adds every value of another accumulator, as if they had been added
+     * here one at a time.
+     *
+     * @param other is the accumulator to merge into this one
+     */
+    public void merge(RunningStats other) {
+
+        if (other.count == 0) {
+            return;
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return the number of values added
+     */
+    public long count() {
+
+        return count;
+    }
+
+    /**
+     * Returns the sample mean.
+     *
+     * @return the sample mean, or {@code Double.NaN} if no value was added
+     */
+    public double mean() {
+
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the sum of squared deviations from the mean.
+     *
+     * @return the sum of squared deviations from the mean
+     */
+    public double m2() {
+
+        return m2;
+    }
+
+    /**
+     * Returns the sample variance.
+     *
+     * @return the sample variance, or {@code Double.NaN} if fewer than two
+     *         values were added
+     */
+    public double var() {
+
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation.
+     *
+     * @return the sample standard deviation, or {@code Double.NaN} if fewer
+     *         than two values were added
+     */
+    public double stddev() {
+
+        return Math.sqrt(var());
+    }
+
+    /**
+     * Unit tests the RunningStats data type.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+
+        double[] values = { 0.1, 0.3, 0.5, 0.7, 0.9 };
+
+        RunningStats all = new RunningStats();
+        for (double x : values) {
+            all.add(x);
+        }
+        System.out.println("mean   = " + all.mean());
+        System.out.println("stddev = " + all.stddev());
+
+        RunningStats left = new RunningStats();
+        RunningStats right = new RunningStats();
+        for (int i = 0; i < values.length; i++) {
+            if (i < 2) {
+                left.add(values[i]);
+            }
+            else {
+                right.add(values[i]);
+            }
+        }
+        left.merge(right);
+        System.out.println("merged = " + left.mean() + " " + left.stddev());
+    }
+}
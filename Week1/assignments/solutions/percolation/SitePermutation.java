@@ -0,0 +1,123 @@
+/******************************************************************************
+ *  Compilation:  javac SitePermutation.java
+ *  Execution:    java SitePermutation size
+ *  Dependencies: none
+ *
+ *  The SitePermutation class draws the 1D site indices 0 .. size - 1 in a
+ *  uniformly random order without repetition. The permutation is generated
+ *  lazily with an incremental Fisher-Yates shuffle: the k-th draw swaps a
+ *  random element of the undrawn suffix into position k, so every draw
+ *  costs O(1) and returns a site that has not been drawn before.
+ *
+ *  Trial drivers use it instead of drawing (row, col) uniformly and
+ *  rejecting sites that are already open, and reset() it between trials.
+ *
+ *  % java SitePermutation 10
+ *  7 8 6 9 2 4 1 5 0 3
+ *
+ ******************************************************************************/
+
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+public class SitePermutation {
+
+    private final int[] sites;
+    private int drawn;
+
+    /**
+     * Creates a permutation of the site indices 0 .. size - 1.
+     *
+     * @param size is the number of sites
+     * @throws IllegalArgumentException if size <= 0
+     */
+    public SitePermutation(int size) {
+
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be greater than 0");
+        }
+
+        sites = new int[size];
+        for (int i = 0; i < size; i++) {
+            sites[i] = i;
+        }
+        drawn = 0;
+    }
+
+    /**
+     * Checks if there are sites left to draw.
+     *
+     * @return {@code true} if not every site has been drawn yet
+     */
+    public boolean hasNext() {
+
+        return drawn < sites.length;
+    }
+
+    /**
+     * Draws the next site of the permutation.
+     *
+     * @param random is the random stream to draw from
+     * @return a site index that has not been drawn before
+     * @throws NoSuchElementException if every site has been drawn
+     */
+    public int next(SplittableRandom random) {
+
+        if (drawn == sites.length) {
+            throw new NoSuchElementException("Every site has been drawn.");
+        }
+
+        int swap = drawn + random.nextInt(sites.length - drawn);
+        int site = sites[swap];
+        sites[swap] = sites[drawn];
+        sites[drawn++] = site;
+        return site;
+    }
+
+    /**
+     * Restores the identity order and starts over, so that the next draws
+     * form a new permutation exactly as if the instance were newly created.
+     * Every swap moves an element into a drawn position, so each displaced
+     * element lies on a cycle through the drawn positions, and putting those
+     * cycles back in place costs O(drawn) rather than O(size).
+     */
+    public void reset() {
+
+        for (int i = 0; i < drawn; i++) {
+            while (sites[i] != i) {
+                int site = sites[i];
+                sites[i] = sites[site];
+                sites[site] = site;
+            }
+        }
+        drawn = 0;
+    }
+
+    /**
+     * Returns the number of sites drawn so far.
+     *
+     * @return the number of sites drawn so far
+     */
+    public int drawn() {
+
+        return drawn;
+    }
+
+    /**
+     * Unit tests the SitePermutation data type.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+
+        int size = Integer.parseInt(args[0]);
+        SitePermutation permutation = new SitePermutation(size);
+        SplittableRandom random = new SplittableRandom();
+
+        StringBuilder out = new StringBuilder();
+        while (permutation.hasNext()) {
+            out.append(permutation.next(random)).append(' ');
+        }
+        System.out.println(out.toString().trim());
+    }
+}
@@ -0,0 +1,109 @@
+/******************************************************************************
+ *  Compilation:  javac SiteSelectionBenchmark.java
+ *  Execution:    java SiteSelectionBenchmark n trials
+ *  Dependencies: algs4/Stopwatch.java Percolation.java SitePermutation.java
+ *
+ *  Compares the two ways of choosing the next site in a trial: drawing
+ *  (row, col) uniformly and skipping sites that are already open, and
+ *  walking a random SitePermutation of the sites. Reports the draws per
+ *  trial of each driver, the draws saved per trial and the elapsed time.
+ *
+ *  % java SiteSelectionBenchmark 1000 20
+ *  driver             draws/trial   seconds
+ *  rejection              901561.2     2.061
+ *  permutation            592849.8     1.950
+ *  draws saved per trial: 308711.4 (34.2%)
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.SplittableRandom;
+
+public class SiteSelectionBenchmark {
+
+    /**
+     * Runs one trial with rejection sampling through the checked API.
+     *
+     * @param n      is the size of the grid
+     * @param random is the random stream of this trial
+     * @return the number of draws until the system percolates
+     */
+    private static long rejectionTrial(int n, SplittableRandom random) {
+
+        Percolation percolation = new Percolation(n);
+        long draws = 0;
+        while (!percolation.percolates()) {
+
+            int row = random.nextInt(1, n + 1);
+            int col = random.nextInt(1, n + 1);
+            draws++;
+            if (percolation.isOpen(row, col)) {
+                continue;
+            }
+            percolation.open(row, col);
+        }
+        return draws;
+    }
+
+    /**
+     * Runs one trial walking a random permutation of the sites.
+     *
+     * @param n      is the size of the grid
+     * @param random is the random stream of this trial
+     * @return the number of draws until the system percolates
+     */
+    private static long permutationTrial(int n, SplittableRandom random) {
+
+        Percolation percolation = new Percolation(n);
+        SitePermutation sites = new SitePermutation(n * n);
+        while (!percolation.percolates()) {
+            percolation.openBlockedSite(sites.next(random));
+        }
+        return sites.drawn();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the command-line arguments: n and trials
+     */
+    public static void main(String[] args) {
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = 42;
+
+        // warm up both drivers before timing
+        rejectionTrial(n, new SplittableRandom(seed));
+        permutationTrial(n, new SplittableRandom(seed));
+
+        Stopwatch stopwatch = new Stopwatch();
+        long rejectionDraws = 0;
+        for (int i = 0; i < trials; i++) {
+            rejectionDraws += rejectionTrial(
+                    n, new SplittableRandom(PercolationStats.trialSeed(seed, i)));
+        }
+        double rejectionTime = stopwatch.elapsedTime();
+
+        stopwatch = new Stopwatch();
+        long permutationDraws = 0;
+        for (int i = 0; i < trials; i++) {
+            permutationDraws += permutationTrial(
+                    n, new SplittableRandom(PercolationStats.trialSeed(seed, i)));
+        }
+        double permutationTime = stopwatch.elapsedTime();
+
+        double rejectionPerTrial = (double) rejectionDraws / trials;
+        double permutationPerTrial = (double) permutationDraws / trials;
+        double saved = rejectionPerTrial - permutationPerTrial;
+
+        System.out.printf("%-15s %15s %9s%n", "driver", "draws/trial", "seconds");
+        System.out.printf("%-15s %15.1f %9.3f%n",
+                          "rejection", rejectionPerTrial, rejectionTime);
+        System.out.printf("%-15s %15.1f %9.3f%n",
+                          "permutation", permutationPerTrial, permutationTime);
+        System.out.printf("draws saved per trial: %.1f (%.1f%%)%n",
+                          saved, 100.0 * saved / rejectionPerTrial);
+    }
+}
@@ -0,0 +1,429 @@
+/******************************************************************************
+ *  Compilation:  javac TrialLog.java
+ *  Execution:    java TrialLog log-file
+ *  Dependencies: PercolationStats.java RunningStats.java
+ *
+ *  The TrialLog class is an append-only binary log of the finished trials
+ *  of a PercolationStats run, from which a pre-empted run resumes. The file
+ *  starts with a 24-byte header identifying the run
+ *
+ *      int magic, int version, int n, int estimator code, long seed
+ *
+ *  followed by one fixed-size 36-byte record per finished trial, in the
+ *  order the trials finished
+ *
+ *      int trial, int n, long trial seed, double threshold, long nanoseconds,
+ *      int CRC-32C of the 32 bytes before it
+ *
+ *  Records are written as soon as a trial finishes and the file is forced
+ *  to disk at most once per second, and on close. When a log is reopened,
+ *  it is cut off at the first record that is partial or fails its checksum,
+ *  such as the zero-filled or garbage tail a power loss can leave, and the
+ *  trials from there on run again. Every intact record is checked against
+ *  the trial seed re-derived from the master seed, so a log is never
+ *  resumed by a different run. The summary of main opens the log read-only
+ *  and leaves it as it is.
+ *
+ *  An open log keeps in memory only which trials it records as completed,
+ *  one bit per trial, and for every group of 65536 consecutive trials the
+ *  range of the file that holds their records. The thresholds themselves
+ *  are read back from the file one block of trials at a time, so resuming
+ *  a run of 10^8 trials does not hold 800 MB of thresholds.
+ *
+ *  % java PercolationStats 200 1000 percolation 42 4 plain run.log
+ *  % java TrialLog run.log
+ *  n       = 200
+ *  seed    = 42
+ *  trials  = 1000
+ *  mean    = 0.5929735250000001
+ *  seconds = 12.687
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.CRC32C;
+
+public class TrialLog implements AutoCloseable {
+
+    private static final int MAGIC = 0x50455243;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 24;
+    private static final int RECORD_BYTES = 36;
+    private static final long SYNC_NANOS = 1_000_000_000L;
+
+    // log2 of the number of consecutive trials whose records are indexed
+    // together by one range of the file
+    private static final int GROUP_SHIFT = 16;
+
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private final int n;
+    private final long seed;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+    private final CRC32C crc = new CRC32C();
+    private final BitSet completed = new BitSet();
+
+    // file offsets of the first record and one past the last record of the
+    // completed trials of each group, or MAX_VALUE and 0 if it has none
+    private long[] groupStart = new long[0];
+    private long[] groupEnd = new long[0];
+    private long nanos = 0;
+    private long lastSync = System.nanoTime();
+
+    /**
+     * Opens the log of a run, creating it if needed, and loads the trials it
+     * records as completed.
+     *
+     * @param file      is the log file
+     * @param n         is the size of the grid of the run
+     * @param seed      is the master seed of the run
+     * @param estimator is the estimator of the run
+     * @throws IllegalArgumentException if the file is the log of another run
+     * @throws UncheckedIOException if the file cannot be read or written
+     */
+    public TrialLog(Path file, int n, long seed, PercolationStats.Estimator estimator) {
+
+        this(file, n, seed, estimator, false);
+    }
+
+    /**
+     * Opens the log of a run, as above, or read-only to inspect it, in which
+     * case it must exist and is neither created nor cut off.
+     *
+     * @param file      is the log file
+     * @param n         is the size of the grid of the run
+     * @param seed      is the master seed of the run
+     * @param estimator is the estimator of the run
+     * @param readOnly  is true to open the log for reading only
+     * @throws IllegalArgumentException if the file is the log of another run
+     * @throws UncheckedIOException if the file cannot be read or written
+     */
+    private TrialLog(Path file, int n, long seed,
+                     PercolationStats.Estimator estimator, boolean readOnly) {
+
+        this.n = n;
+        this.seed = seed;
+        this.readOnly = readOnly;
+        try {
+            channel = readOnly
+                    ? FileChannel.open(file, StandardOpenOption.READ)
+                    : FileChannel.open(file, StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot open " + file, e);
+        }
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n)
+                  .putInt(estimator.code()).putLong(seed).flip();
+
+            if (channel.size() < HEADER_BYTES && readOnly) {
+                throw new IllegalArgumentException(file + " is not a trial log");
+            }
+            else if (channel.size() < HEADER_BYTES) {
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            else {
+                ByteBuffer existing = ByteBuffer.allocate(HEADER_BYTES);
+                channel.read(existing, 0);
+                if (!existing.flip().equals(header)) {
+                    throw new IllegalArgumentException(
+                            file + " is not the log of this run");
+                }
+                load(file);
+            }
+            if (!readOnly) {
+                channel.position(channel.size());
+            }
+        }
+        catch (IOException e) {
+            closeAfter(e);
+            throw new UncheckedIOException("Cannot read " + file, e);
+        }
+        catch (RuntimeException e) {
+            closeAfter(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the channel after a failure to open the log.
+     *
+     * @param failure is the exception that the failure threw
+     */
+    private void closeAfter(Exception failure) {
+
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Reads the records of the log up to the first one that is partial or
+     * fails its checksum, and unless the log is read-only cuts the file off
+     * there.
+     *
+     * @param file is the log file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if an intact record does not match the
+     *                                  run
+     */
+    private void load(Path file) throws IOException {
+
+        long end = HEADER_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+        channel.position(HEADER_BYTES);
+        boolean isEndOfFile = false;
+        boolean isCorrupt = false;
+        while (!isEndOfFile && !isCorrupt) {
+            isEndOfFile = channel.read(buffer) < 0;
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_BYTES) {
+                if (checksum(buffer, buffer.position()) != buffer.getInt(
+                        buffer.position() + RECORD_BYTES - 4)) {
+                    isCorrupt = true;
+                    break;
+                }
+
+                int trial = buffer.getInt();
+                int recordN = buffer.getInt();
+                long trialSeed = buffer.getLong();
+                buffer.getDouble();
+                long trialNanos = buffer.getLong();
+
+                if (trial < 0 || recordN != n
+                        || trialSeed != PercolationStats.trialSeed(seed, trial)) {
+                    throw new IllegalArgumentException(
+                            file + " has a record of another run, trial " + trial);
+                }
+                buffer.getInt();
+                put(trial, end);
+                nanos += trialNanos;
+                end += RECORD_BYTES;
+            }
+            buffer.compact();
+        }
+
+        if (!readOnly && end < channel.size()) {
+            channel.truncate(end);
+        }
+    }
+
+    /**
+     * Computes the checksum of a record, over all its bytes but the last four
+     * where the checksum is stored.
+     *
+     * @param buffer   holds the record
+     * @param position is the position of the record in the buffer
+     * @return the CRC-32C of the record as an int
+     */
+    private int checksum(ByteBuffer buffer, int position) {
+
+        crc.reset();
+        crc.update(buffer.slice(position, RECORD_BYTES - 4));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Records a trial as completed in memory, and the position of its record
+     * in the range of its group.
+     *
+     * @param trial    is the index of the trial
+     * @param position is the file offset of its record
+     */
+    private void put(int trial, long position) {
+
+        int group = trial >>> GROUP_SHIFT;
+        if (group >= groupStart.length) {
+            int length = groupStart.length;
+            groupStart = Arrays.copyOf(groupStart, Math.max(group + 1, 2 * length));
+            groupEnd = Arrays.copyOf(groupEnd, groupStart.length);
+            Arrays.fill(groupStart, length, groupStart.length, Long.MAX_VALUE);
+        }
+        groupStart[group] = Math.min(groupStart[group], position);
+        groupEnd[group] = Math.max(groupEnd[group], position + RECORD_BYTES);
+        completed.set(trial);
+    }
+
+    /**
+     * Returns the number of trials the log records as completed.
+     *
+     * @return the number of completed trials loaded from the file
+     */
+    public int completedTrials() {
+
+        return completed.cardinality();
+    }
+
+    /**
+     * Checks if the log records the trial as completed when it was opened.
+     *
+     * @param trial is the index of the trial
+     * @return {@code true} if the trial was completed before;
+     */
+    public boolean isCompleted(int trial) {
+
+        return completed.get(trial);
+    }
+
+    /**
+     * Reads the thresholds of the completed trials in [from, to) back from the
+     * file, scanning only the ranges of the groups these trials belong to.
+     * The entries of the other trials are left as they are.
+     *
+     * @param from       is the index of the first trial
+     * @param to         is one past the index of the last trial
+     * @param thresholds receives the threshold of trial i at i - offset
+     * @param offset     is the index of the trial at thresholds[0]
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    public void readThresholds(int from, int to, double[] thresholds, int offset) {
+
+        int first = completed.nextSetBit(from);
+        if (first < 0 || first >= to) {
+            return;
+        }
+
+        long start = Long.MAX_VALUE;
+        long end = 0;
+        int last = Math.min((to - 1) >>> GROUP_SHIFT, groupStart.length - 1);
+        for (int group = first >>> GROUP_SHIFT; group <= last; group++) {
+            start = Math.min(start, groupStart[group]);
+            end = Math.max(end, groupEnd[group]);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+        try {
+            for (long position = start; position < end; position += buffer.limit()) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("The log ends before its records");
+                    }
+                }
+                for (int record = 0; record < buffer.limit(); record += RECORD_BYTES) {
+                    int trial = buffer.getInt(record);
+                    if (trial >= from && trial < to && completed.get(trial)) {
+                        thresholds[trial - offset] = buffer.getDouble(record + 16);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot read trials " + from + " to " + to, e);
+        }
+    }
+
+    /**
+     * Appends the record of a finished trial, forcing the log to disk if the
+     * last force was more than a second ago.
+     *
+     * @param trial      is the index of the trial
+     * @param threshold  is its threshold
+     * @param trialNanos is the time it took in nanoseconds
+     * @throws UncheckedIOException if the record cannot be written
+     */
+    public synchronized void append(int trial, double threshold, long trialNanos) {
+
+        record.clear();
+        record.putInt(trial).putInt(n).putLong(PercolationStats.trialSeed(seed, trial))
+              .putDouble(threshold).putLong(trialNanos);
+        record.putInt(checksum(record, 0)).flip();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+
+            long now = System.nanoTime();
+            if (now - lastSync > SYNC_NANOS) {
+                channel.force(false);
+                lastSync = now;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot append trial " + trial, e);
+        }
+        nanos += trialNanos;
+    }
+
+    /**
+     * Forces the log to disk and closes it.
+     *
+     * @throws UncheckedIOException if the log cannot be forced to disk
+     */
+    @Override
+    public synchronized void close() {
+
+        try (FileChannel toClose = channel) {
+            if (toClose.isOpen() && !readOnly) {
+                toClose.force(false);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot close the log", e);
+        }
+    }
+
+    /**
+     * Prints a summary of a log.
+     *
+     * @param args the command-line arguments: the log file
+     */
+    public static void main(String[] args) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(Path.of(args[0]))) {
+            channel.read(header, 0);
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            System.out.println(args[0] + " is not a trial log");
+            return;
+        }
+        header.getInt();
+        int n = header.getInt();
+        int code = header.getInt();
+        long seed = header.getLong();
+        PercolationStats.Estimator estimator;
+        try {
+            estimator = PercolationStats.Estimator.fromCode(code);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(args[0] + " has an unknown estimator code " + code);
+            return;
+        }
+
+        try (TrialLog log = new TrialLog(Path.of(args[0]), n, seed, estimator, true)) {
+            RunningStats stats = new RunningStats();
+            double[] thresholds = new double[1 << GROUP_SHIFT];
+            int trials = log.completed.length();
+            for (int from = 0, to; from < trials; from = to) {
+                to = (int) Math.min((long) from + thresholds.length, trials);
+                log.readThresholds(from, to, thresholds, from);
+                for (int trial = log.completed.nextSetBit(from); trial >= 0 && trial < to;
+                     trial = log.completed.nextSetBit(trial + 1)) {
+                    stats.add(thresholds[trial - from]);
+                }
+            }
+            System.out.println("n       = " + n);
+            System.out.println("seed    = " + seed);
+            System.out.println("trials  = " + log.completedTrials());
+            System.out.println("mean    = " + stats.mean());
+            System.out.printf("seconds = %.3f%n", log.nanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/******************************************************************************
+ *  Compilation:  javac BlockingDequeBenchmark.java
+ *  Execution:    java BlockingDequeBenchmark items threads capacity
+ *                     platform|virtual [bounded|linked|synchronized ...]
+ *  Dependencies: BoundedBlockingDeque.java Deque.java LatencyHistogram.java
+ *
+ *  Times three blocking deques of the given capacity handing items between
+ *  threads: BoundedBlockingDeque, java.util.concurrent.LinkedBlockingDeque
+ *  and a Deque wrapped in synchronized blocks that waits with wait and
+ *  notifyAll, the way callers shared a Deque between threads before. In
+ *  1:N one producer puts the items on the last and the given number of
+ *  consumers take them from the first; in N:1 as many producers share the
+ *  items and one consumer takes them. Every item is the time at which it
+ *  was put, so the consumers record how long it waited in a
+ *  LatencyHistogram. Reported are the items handed over per second, in
+ *  millions, and the percentiles of the hand-off latency in microseconds.
+ *  The threads are platform threads or virtual threads.
+ *
+ *  On a machine with a single core the threads take turns rather than run
+ *  together, so most of a latency is the time an item waits for a consumer
+ *  to be scheduled, and the lock of each end in BoundedBlockingDeque cannot
+ *  pay off: its extra atomic counters make it slower here than the single
+ *  lock of LinkedBlockingDeque. The synchronized deque wakes every waiting
+ *  thread on each operation, which shows in its worst latency, and on JDK
+ *  21 a virtual thread waiting in it pins its carrier thread.
+ *
+ *  % java BlockingDequeBenchmark 4000000 4 1024 platform
+ *  deque         test  items (M/s)  p50 (us)  p99 (us)  p99.9 (us)  max (us)
+ *  bounded        1:4         2.87     139.3     196.6      1638.4    4131.2
+ *  bounded        4:1         3.09     147.5     852.0      1572.9    7280.2
+ *  linked         1:4         4.62      90.1     110.6       786.4    4216.4
+ *  linked         4:1         4.86      98.3     475.1       688.1   10447.8
+ *  synchronized   1:4         3.73     131.1     213.0       983.0    4501.2
+ *  synchronized   4:1         3.81     131.1     327.7       819.2   48455.7
+ *
+ *  % java BlockingDequeBenchmark 4000000 4 1024 virtual
+ *  deque         test  items (M/s)  p50 (us)  p99 (us)  p99.9 (us)  max (us)
+ *  bounded        1:4         3.32     139.3     254.0      4194.3   10542.8
+ *  bounded        4:1         3.72     139.3     180.2      1245.2    2715.2
+ *  linked         1:4         5.35      90.1     122.9      1769.5    8484.5
+ *  linked         4:1         5.71      90.1     122.9       507.9    2270.7
+ *  synchronized   1:4         3.28     147.5     237.6      3145.7    5971.1
+ *  synchronized   4:1         3.48     147.5     344.1       655.4   97239.7
+ *
+ ******************************************************************************/
+
+public class BlockingDequeBenchmark {
+
+    // the item that tells a consumer to stop, told apart by identity
+    private static final Long STOP = Long.MIN_VALUE;
+
+    /**
+     * The operations the benchmark needs from a blocking deque.
+     */
+    private interface Handoff {
+
+        void put(Long item) throws InterruptedException;
+
+        Long take() throws InterruptedException;
+    }
+
+    /**
+     * A Deque of fixed capacity wrapped in synchronized blocks, the usual
+     * way of sharing a Deque between threads.
+     */
+    private static class SynchronizedHandoff implements Handoff {
+
+        private final Deque<Long> deque = new Deque<>();
+        private final int capacity;
+
+        SynchronizedHandoff(int capacity) {
+
+            this.capacity = capacity;
+        }
+
+        public synchronized void put(Long item) throws InterruptedException {
+
+            while (deque.size() == capacity) {
+
+                wait();
+            }
+            deque.addLast(item);
+            notifyAll();
+        }
+
+        public synchronized Long take() throws InterruptedException {
+
+            while (deque.isEmpty()) {
+
+                wait();
+            }
+            Long item = deque.removeFirst();
+            notifyAll();
+            return item;
+        }
+    }
+
+    /**
+     * Return a new, empty deque.
+     *
+     * @param name     bounded, linked or synchronized
+     * @param capacity the capacity of the deque
+     * @return the deque
+     */
+    private static Handoff create(String name, int capacity) {
+
+        switch (name) {
+
+            case "bounded": {
+
+                BoundedBlockingDeque<Long> deque =
+                        new BoundedBlockingDeque<>(capacity);
+                return new Handoff() {
+
+                    public void put(Long item) throws InterruptedException {
+
+                        deque.putLast(item);
+                    }
+
+                    public Long take() throws InterruptedException {
+
+                        return deque.takeFirst();
+                    }
+                };
+            }
+            case "linked": {
+
+                LinkedBlockingDeque<Long> deque =
+                        new LinkedBlockingDeque<>(capacity);
+                return new Handoff() {
+
+                    public void put(Long item) throws InterruptedException {
+
+                        deque.putLast(item);
+                    }
+
+                    public Long take() throws InterruptedException {
+
+                        return deque.takeFirst();
+                    }
+                };
+            }
+            case "synchronized":
+
+                return new SynchronizedHandoff(capacity);
+            default:
+
+                throw new IllegalArgumentException("Unknown deque: " + name
+                                                           + ".");
+        }
+    }
+
+    /**
+     * Put items stamped with the current time on the deque.
+     *
+     * @param deque the deque
+     * @param items the number of items
+     */
+    private static void produce(Handoff deque, int items)
+            throws InterruptedException {
+
+        for (int i = 0; i < items; i++) {
+
+            deque.put(System.nanoTime());
+        }
+    }
+
+    /**
+     * Take items from the deque until as many STOP items as given, recording
+     * how long each item waited.
+     *
+     * @param deque     the deque
+     * @param stops     the number of STOP items to take
+     * @param histogram the histogram of the latencies
+     */
+    private static void consume(Handoff deque, int stops,
+                                LatencyHistogram histogram)
+            throws InterruptedException {
+
+        while (stops > 0) {
+
+            Long item = deque.take();
+            if (item == STOP) {
+
+                stops--;
+            }
+            else {
+
+                histogram.record(System.nanoTime() - item);
+            }
+        }
+    }
+
+    /**
+     * Hand the items from the producers to the consumers, of which one side
+     * has a single thread, and wait for all of them to finish.
+     *
+     * @param deque     the deque
+     * @param builder   the builder of the threads
+     * @param items     the number of items
+     * @param producers the number of producers
+     * @param consumers the number of consumers
+     * @param histogram the histogram of the latencies
+     */
+    private static void run(Handoff deque, Thread.Builder builder, int items,
+                            int producers, int consumers,
+                            LatencyHistogram histogram)
+            throws InterruptedException {
+
+        List<Thread> threads = new ArrayList<>();
+        List<LatencyHistogram> histograms = new ArrayList<>();
+        for (int i = 0; i < consumers; i++) {
+
+            LatencyHistogram own = new LatencyHistogram();
+            histograms.add(own);
+            int stops = consumers == 1 ? producers : 1;
+            threads.add(builder.start(() -> {
+
+                try {
+
+                    consume(deque, stops, own);
+                }
+                catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        List<Thread> producing = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+
+            int share = items / producers + (i < items % producers ? 1 : 0);
+            int pills = producers == 1 ? consumers : 1;
+            producing.add(builder.start(() -> {
+
+                try {
+
+                    produce(deque, share);
+                    for (int j = 0; j < pills; j++) {
+
+                        deque.put(STOP);
+                    }
+                }
+                catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        for (Thread thread : producing) {
+
+            thread.join();
+        }
+        for (Thread thread : threads) {
+
+            thread.join();
+        }
+        for (LatencyHistogram own : histograms) {
+
+            histogram.add(own);
+        }
+    }
+
+    /**
+     * Time one deque in one test.
+     *
+     * @param name      the name of the deque
+     * @param builder   the builder of the threads
+     * @param items     the number of items
+     * @param producers the number of producers
+     * @param consumers the number of consumers
+     * @param capacity  the capacity of the deque
+     * @return the line of results
+     */
+    private static String time(String name, Thread.Builder builder, int items,
+                               int producers, int consumers, int capacity)
+            throws InterruptedException {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        long start = System.nanoTime();
+        run(create(name, capacity), builder, items, producers, consumers,
+            histogram);
+        long elapsed = System.nanoTime() - start;
+
+        if (histogram.total() != items) {
+
+            throw new IllegalStateException("Lost items.");
+        }
+
+        return String.format("%-12s %5s %12.2f %9.1f %9.1f %11.1f %9.1f",
+                             name, producers + ":" + consumers,
+                             items * 1e3 / elapsed,
+                             histogram.percentile(0.5) / 1e3,
+                             histogram.percentile(0.99) / 1e3,
+                             histogram.percentile(0.999) / 1e3,
+                             histogram.max() / 1e3);
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args the command-line arguments: items, threads, capacity,
+     *             platform or virtual and the deques to time
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int items = Integer.parseInt(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        int capacity = Integer.parseInt(args[2]);
+        Thread.Builder builder = args[3].equals("virtual")
+                ? Thread.ofVirtual() : Thread.ofPlatform();
+        String[] names = args.length > 4
+                ? java.util.Arrays.copyOfRange(args, 4, args.length)
+                : new String[] { "bounded", "linked", "synchronized" };
+
+        // warm up the JIT
+        for (String name : names) {
+
+            time(name, builder, Math.min(items, 200_000), 1, threads, capacity);
+            time(name, builder, Math.min(items, 200_000), threads, 1, capacity);
+        }
+
+        System.out.println("deque         test  items (M/s)  p50 (us)"
+                                   + "  p99 (us)  p99.9 (us)  max (us)");
+        for (String name : names) {
+
+            System.out.println(time(name, builder, items, 1, threads,
+                                    capacity));
+            System.out.println(time(name, builder, items, threads, 1,
+                                    capacity));
+        }
+    }
+}
@@ -0,0 +1,955 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/******************************************************************************
+ *  Compilation:  javac BoundedBlockingDeque.java
+ *  Execution:    java BoundedBlockingDeque
+ *  Dependencies: DequeModel.java
+ *
+ *  <p>A thread-safe double-ended queue of fixed capacity, for handing work
+ *  between threads with backpressure: putFirst and putLast wait while the
+ *  deque is full, takeFirst and takeLast wait while it is empty, and the
+ *  offer and poll methods give up after a timeout. The DequeModel methods
+ *  never wait: the adds throw when the deque is full and the removes throw
+ *  when it is empty. The bulk adds addAllFirst and addAllLast add the items
+ *  one at a time, so they are not all-or-none: if the deque fills up part
+ *  way through, the items added so far stay in the deque and the add that
+ *  found it full throws. drainTo removes items with pollFirst and stops
+ *  as soon as the deque is empty, and the iterator and the spliterator
+ *  work on a copy of the items, so all of them are safe to use while other
+ *  threads change the deque.
+ *
+ *  The items are kept in a circular buffer with a lock for each end, so
+ *  that operations on the first and on the last of the deque do not wait
+ *  for each other. Two atomic counters hand out the right to an operation
+ *  before either lock is taken: available counts the items that may be
+ *  removed and free the slots that may be filled. An add claims a free
+ *  slot, fills it under the lock of its end, and then makes the item
+ *  available; a remove claims an available item, takes it under the lock
+ *  of its end, and then frees its slot. As no more items are claimed than
+ *  have been added, removes at both ends cannot take the same item, and a
+ *  remove never reaches a slot an add is still filling.
+ *
+ *  A thread only waits when it cannot claim an item or a slot. It then
+ *  waits on a condition of a third lock, which the other side signals only
+ *  when some thread is waiting, so the uncontended path takes a
+ *  compare-and-set on a counter and an uncontended lock. All the locks are
+ *  ReentrantLocks, never monitors, so a virtual thread that waits in the
+ *  deque unmounts from its carrier thread instead of pinning it.
+ *  BlockingDequeBenchmark times the deque against LinkedBlockingDeque and
+ *  a Deque wrapped in synchronized blocks.</p>
+ *
+ *  % java BoundedBlockingDeque
+ *  ------------------------------
+ *  Added item 1 to the first and 2 to the last, capacity: 4
+ *  Size: 2, remaining capacity: 2
+ *  Offered items 3 and 4, then 5: true true false
+ *  Caught exception adding item to the last: Deque is full.
+ *  Removed item from first: 4
+ *  Removed item from last: 3
+ *  Items in deque (first to last): 1 2
+ *  Polled for 10 ms from an empty deque: null
+ *  4 producers and 4 consumers passed 400000 items, sum: 20000200000
+ *  Drained and polled every offered item from two threads: true
+ *  Caught exception while removing from first: Deque is empty.
+ *  Caught exception adding item to the first: Item cannot be null.
+ *  ------------------------------
+ ******************************************************************************/
+
+public class BoundedBlockingDeque<Item> implements DequeModel<Item> {
+
+    // circular buffer of the given capacity
+    private final Object[] items;
+
+    // index of the first item, guarded by headLock
+    private int head;
+
+    // one past the index of the last item, guarded by tailLock
+    private int tail;
+
+    private final ReentrantLock headLock = new ReentrantLock();
+    private final ReentrantLock tailLock = new ReentrantLock();
+
+    // items added that no remove has claimed yet
+    private final AtomicInteger available = new AtomicInteger();
+
+    // slots that no add has claimed yet
+    private final AtomicInteger free;
+
+    // threads wait on the conditions of this lock when they cannot claim
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final Condition notFull = waitLock.newCondition();
+
+    // threads waiting for an item and for a slot
+    private final AtomicInteger takers = new AtomicInteger();
+    private final AtomicInteger putters = new AtomicInteger();
+
+    /**
+     * Construct an empty deque that holds at most capacity items.
+     *
+     * @param capacity the largest number of items on the deque
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public BoundedBlockingDeque(int capacity) {
+
+        if (capacity <= 0) {
+
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        items = new Object[capacity];
+        free = new AtomicInteger(capacity);
+    }
+
+    /**
+     * Check if the deque is empty. The answer may be out of date as soon as
+     * it is returned if other threads use the deque.
+     *
+     * @return true if the deque was empty, false otherwise
+     */
+    public boolean isEmpty() {
+
+        return size() == 0;
+    }
+
+    /**
+     * Return the number of items on the deque that may be removed, not
+     * counting items being added or removed at the moment.
+     *
+     * @return the number of items on the deque
+     */
+    public int size() {
+
+        return available.get();
+    }
+
+    /**
+     * Return the number of items that may be added without waiting.
+     *
+     * @return the number of free slots
+     */
+    public int remainingCapacity() {
+
+        return free.get();
+    }
+
+    /**
+     * Return the largest number of items on the deque.
+     *
+     * @return the capacity of the deque
+     */
+    public int capacity() {
+
+        return items.length;
+    }
+
+    /**
+     * Add an item to the first of the deque if there is room for it.
+     *
+     * @param item the item to be enqueued to the first of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws IllegalStateException if the deque is full
+     */
+    public void addFirst(Item item) {
+
+        if (!offerFirst(item)) {
+
+            throw new IllegalStateException("Deque is full.");
+        }
+    }
+
+    /**
+     * Add an item to the last of the deque if there is room for it.
+     *
+     * @param item the item to be enqueued to the last of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws IllegalStateException if the deque is full
+     */
+    public void addLast(Item item) {
+
+        if (!offerLast(item)) {
+
+            throw new IllegalStateException("Deque is full.");
+        }
+    }
+
+    /**
+     * Remove and return the item from the first of the deque, if there is
+     * one.
+     *
+     * @return the item removed from the first of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    public Item removeFirst() {
+
+        final Item item = pollFirst();
+        if (item == null) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the last of the deque, if there is
+     * one.
+     *
+     * @return the item removed from the last of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    public Item removeLast() {
+
+        final Item item = pollLast();
+        if (item == null) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+
+        return item;
+    }
+
+    /**
+     * Add an item to the first of the deque if there is room for it.
+     *
+     * @param item the item to be enqueued to the first of the deque
+     * @return true if the item was added, false if the deque is full
+     * @throws IllegalArgumentException if the item is null
+     */
+    public boolean offerFirst(Item item) {
+
+        checkItem(item);
+        if (!tryClaim(free)) {
+
+            return false;
+        }
+
+        insertFirst(item);
+        return true;
+    }
+
+    /**
+     * Add an item to the last of the deque if there is room for it.
+     *
+     * @param item the item to be enqueued to the last of the deque
+     * @return true if the item was added, false if the deque is full
+     * @throws IllegalArgumentException if the item is null
+     */
+    public boolean offerLast(Item item) {
+
+        checkItem(item);
+        if (!tryClaim(free)) {
+
+            return false;
+        }
+
+        insertLast(item);
+        return true;
+    }
+
+    /**
+     * Remove and return the item from the first of the deque, if there is
+     * one.
+     *
+     * @return the item removed from the first of the deque, or null if the
+     *         deque is empty
+     */
+    public Item pollFirst() {
+
+        return tryClaim(available) ? extractFirst() : null;
+    }
+
+    /**
+     * Remove and return the item from the last of the deque, if there is
+     * one.
+     *
+     * @return the item removed from the last of the deque, or null if the
+     *         deque is empty
+     */
+    public Item pollLast() {
+
+        return tryClaim(available) ? extractLast() : null;
+    }
+
+    /**
+     * Add an item to the first of the deque, waiting for room if necessary.
+     *
+     * @param item the item to be enqueued to the first of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void putFirst(Item item) throws InterruptedException {
+
+        checkItem(item);
+        claim(free, putters, notFull, Long.MAX_VALUE);
+        insertFirst(item);
+    }
+
+    /**
+     * Add an item to the last of the deque, waiting for room if necessary.
+     *
+     * @param item the item to be enqueued to the last of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void putLast(Item item) throws InterruptedException {
+
+        checkItem(item);
+        claim(free, putters, notFull, Long.MAX_VALUE);
+        insertLast(item);
+    }
+
+    /**
+     * Remove and return the item from the first of the deque, waiting for
+     * one if necessary.
+     *
+     * @return the item removed from the first of the deque
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Item takeFirst() throws InterruptedException {
+
+        claim(available, takers, notEmpty, Long.MAX_VALUE);
+        return extractFirst();
+    }
+
+    /**
+     * Remove and return the item from the last of the deque, waiting for
+     * one if necessary.
+     *
+     * @return the item removed from the last of the deque
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Item takeLast() throws InterruptedException {
+
+        claim(available, takers, notEmpty, Long.MAX_VALUE);
+        return extractLast();
+    }
+
+    /**
+     * Add an item to the first of the deque, waiting up to the timeout for
+     * room if necessary.
+     *
+     * @param item    the item to be enqueued to the first of the deque
+     * @param timeout how long to wait
+     * @param unit    the unit of the timeout
+     * @return true if the item was added, false if the timeout elapsed
+     * @throws IllegalArgumentException if the item is null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offerFirst(Item item, long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        checkItem(item);
+        if (!claim(free, putters, notFull, unit.toNanos(timeout))) {
+
+            return false;
+        }
+
+        insertFirst(item);
+        return true;
+    }
+
+    /**
+     * Add an item to the last of the deque, waiting up to the timeout for
+     * room if necessary.
+     *
+     * @param item    the item to be enqueued to the last of the deque
+     * @param timeout how long to wait
+     * @param unit    the unit of the timeout
+     * @return true if the item was added, false if the timeout elapsed
+     * @throws IllegalArgumentException if the item is null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offerLast(Item item, long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        checkItem(item);
+        if (!claim(free, putters, notFull, unit.toNanos(timeout))) {
+
+            return false;
+        }
+
+        insertLast(item);
+        return true;
+    }
+
+    /**
+     * Remove and return the item from the first of the deque, waiting up to
+     * the timeout for one if necessary.
+     *
+     * @param timeout how long to wait
+     * @param unit    the unit of the timeout
+     * @return the item removed from the first of the deque, or null if the
+     *         timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Item pollFirst(long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        if (!claim(available, takers, notEmpty, unit.toNanos(timeout))) {
+
+            return null;
+        }
+
+        return extractFirst();
+    }
+
+    /**
+     * Remove and return the item from the last of the deque, waiting up to
+     * the timeout for one if necessary.
+     *
+     * @param timeout how long to wait
+     * @param unit    the unit of the timeout
+     * @return the item removed from the last of the deque, or null if the
+     *         timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Item pollLast(long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        if (!claim(available, takers, notEmpty, unit.toNanos(timeout))) {
+
+            return null;
+        }
+
+        return extractLast();
+    }
+
+    /**
+     * Check that an item to add is not null.
+     *
+     * @param item the item to be added
+     * @throws IllegalArgumentException if the item is null
+     */
+    private static void checkItem(Object item) {
+
+        if (item == null) {
+
+            throw new IllegalArgumentException("Item cannot be null.");
+        }
+    }
+
+    /**
+     * Claim one unit of a counter if it is positive, without waiting.
+     *
+     * @param counter the counter of items or of free slots
+     * @return true if a unit was claimed, false if the counter was 0
+     */
+    private static boolean tryClaim(AtomicInteger counter) {
+
+        int n = counter.get();
+        while (n > 0) {
+
+            final int witness = counter.compareAndExchange(n, n - 1);
+            if (witness == n) {
+
+                return true;
+            }
+            n = witness;
+        }
+
+        return false;
+    }
+
+    /**
+     * Claim one unit of a counter, waiting on a condition while the counter
+     * is 0.
+     *
+     * @param counter   the counter of items or of free slots
+     * @param waiters   the number of threads waiting on the condition
+     * @param condition the condition signalled when the counter is increased
+     * @param nanos     how long to wait, Long.MAX_VALUE to wait forever
+     * @return true if a unit was claimed, false if the time elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean claim(AtomicInteger counter, AtomicInteger waiters,
+                          Condition condition, long nanos)
+            throws InterruptedException {
+
+        if (tryClaim(counter)) {
+
+            return true;
+        }
+
+        final boolean forever = nanos == Long.MAX_VALUE;
+        waitLock.lockInterruptibly();
+        try {
+
+            // a thread increasing the counter signals when it sees a waiter,
+            // and it increases the counter before it looks, so either it
+            // sees this waiter or the claim below sees its unit
+            waiters.incrementAndGet();
+            try {
+
+                while (!tryClaim(counter)) {
+
+                    if (forever) {
+
+                        condition.await();
+                    }
+                    else if (nanos <= 0) {
+
+                        return false;
+                    }
+                    else {
+
+                        nanos = condition.awaitNanos(nanos);
+                    }
+                }
+            }
+            finally {
+
+                waiters.decrementAndGet();
+            }
+
+            // pass a signal on if there is more for the other waiters
+            if (counter.get() > 0 && waiters.get() > 0) {
+
+                condition.signal();
+            }
+
+            return true;
+        }
+        finally {
+
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Give back one unit of a counter and wake a waiting thread, if any.
+     *
+     * @param counter   the counter of items or of free slots
+     * @param waiters   the number of threads waiting on the condition
+     * @param condition the condition the waiting threads wait on
+     */
+    private void release(AtomicInteger counter, AtomicInteger waiters,
+                         Condition condition) {
+
+        counter.incrementAndGet();
+        if (waiters.get() > 0) {
+
+            waitLock.lock();
+            try {
+
+                condition.signal();
+            }
+            finally {
+
+                waitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Fill the slot before the first item, which the caller has claimed.
+     *
+     * @param item the item to add
+     */
+    private void insertFirst(Item item) {
+
+        headLock.lock();
+        try {
+
+            head = head == 0 ? items.length - 1 : head - 1;
+            items[head] = item;
+        }
+        finally {
+
+            headLock.unlock();
+        }
+
+        release(available, takers, notEmpty);
+    }
+
+    /**
+     * Fill the slot after the last item, which the caller has claimed.
+     *
+     * @param item the item to add
+     */
+    private void insertLast(Item item) {
+
+        tailLock.lock();
+        try {
+
+            items[tail] = item;
+            tail = tail == items.length - 1 ? 0 : tail + 1;
+        }
+        finally {
+
+            tailLock.unlock();
+        }
+
+        release(available, takers, notEmpty);
+    }
+
+    /**
+     * Take the first item, which the caller has claimed.
+     *
+     * @return the first item
+     */
+    private Item extractFirst() {
+
+        final Item item;
+        headLock.lock();
+        try {
+
+            item = (Item) items[head];
+
+            // clear the slot to avoid loitering
+            items[head] = null;
+            head = head == items.length - 1 ? 0 : head + 1;
+        }
+        finally {
+
+            headLock.unlock();
+        }
+
+        release(free, putters, notFull);
+        return item;
+    }
+
+    /**
+     * Take the last item, which the caller has claimed.
+     *
+     * @return the last item
+     */
+    private Item extractLast() {
+
+        final Item item;
+        tailLock.lock();
+        try {
+
+            tail = tail == 0 ? items.length - 1 : tail - 1;
+            item = (Item) items[tail];
+
+            // clear the slot to avoid loitering
+            items[tail] = null;
+        }
+        finally {
+
+            tailLock.unlock();
+        }
+
+        release(free, putters, notFull);
+        return item;
+    }
+
+    /**
+     * Remove up to max items from the first of the deque and pass them to
+     * the consumer, in order from first to last. Items that other threads
+     * remove or add meanwhile are simply not drained or drained too, and the
+     * drain stops as soon as the deque is empty.
+     *
+     * @param consumer the consumer of the removed items
+     * @param max      the largest number of items to remove
+     * @return the number of items removed
+     * @throws IllegalArgumentException if the consumer is null or max is
+     *                                  negative
+     */
+    public int drainTo(Consumer<? super Item> consumer, int max) {
+
+        if (consumer == null) {
+
+            throw new IllegalArgumentException("Consumer cannot be null.");
+        }
+
+        if (max < 0) {
+
+            throw new IllegalArgumentException("Max cannot be negative.");
+        }
+
+        int drained = 0;
+        while (drained < max) {
+
+            final Item item = pollFirst();
+            if (item == null) {
+
+                break;
+            }
+            consumer.accept(item);
+            drained++;
+        }
+
+        return drained;
+    }
+
+    /**
+     * Obtain iterator to iterate over items in order from first to last.
+     * The iterator works on a copy of the items taken with both ends
+     * locked, so it never sees the changes made after it was created.
+     *
+     * @return an iterator over items in order from first to last
+     */
+    public Iterator<Item> iterator() {
+
+        final Object[] snapshot = snapshot();
+        return new DequeIterator(snapshot, snapshot.length);
+    }
+
+    /**
+     * Obtain a spliterator over the items in order from first to last. Like
+     * the iterator it works on a copy of the items, so its size is that of
+     * the copy and the deque may change while it is in use.
+     *
+     * @return an ORDERED, SIZED, SUBSIZED and NONNULL spliterator
+     */
+    public Spliterator<Item> spliterator() {
+
+        final Object[] snapshot = snapshot();
+        return Spliterators.spliterator(snapshot, 0, snapshot.length,
+                                        Spliterator.ORDERED
+                                                | Spliterator.NONNULL);
+    }
+
+    /**
+     * Copy the items in order from first to last, with both ends locked.
+     *
+     * @return an array holding exactly the items of the deque
+     */
+    private Object[] snapshot() {
+
+        headLock.lock();
+        tailLock.lock();
+        try {
+
+            // with both ends locked no slot is being filled or emptied, so
+            // the items are the slots from head on up to the first null
+            final Object[] snapshot = new Object[items.length];
+            int filled = 0;
+            while (filled < items.length) {
+
+                final Object item = items[(head + filled) % items.length];
+                if (item == null) {
+
+                    break;
+                }
+                snapshot[filled++] = item;
+            }
+
+            return Arrays.copyOf(snapshot, filled);
+        }
+        finally {
+
+            tailLock.unlock();
+            headLock.unlock();
+        }
+    }
+
+    /**
+     * Iterator class to iterate over a copy of the items of a deque in order
+     * from first to last.
+     */
+    private class DequeIterator implements Iterator<Item> {
+
+        private final Object[] snapshot;
+        private final int count;
+        private int index = 0;
+
+        /**
+         * Construct an iterator over the first count items of a copy.
+         *
+         * @param snapshot the copy of the items
+         * @param count    the number of items in the copy
+         */
+        DequeIterator(Object[] snapshot, int count) {
+
+            this.snapshot = snapshot;
+            this.count = count;
+        }
+
+        /**
+         * Check if there are more items to return.
+         *
+         * @return true if there are more items to return, false otherwise
+         */
+        public boolean hasNext() {
+
+            return index < count;
+        }
+
+        /**
+         * Return the next item in the deque.
+         *
+         * @return the next item in the deque
+         * @throws java.util.NoSuchElementException if there are no more items
+         */
+        public Item next() {
+
+            if (!hasNext()) {
+
+                throw new java.util.NoSuchElementException(
+                        "No more items to return.");
+            }
+
+            return (Item) snapshot[index++];
+        }
+
+        public void remove() {
+
+            throw new UnsupportedOperationException("Operation not supported.");
+        }
+    }
+
+    /**
+     * Test the deque implementation.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        BoundedBlockingDeque<Integer> deque = new BoundedBlockingDeque<>(4);
+        deque.putFirst(1);
+        deque.putLast(2);
+        System.out.println("Added item 1 to the first and 2 to the last, "
+                                   + "capacity: " + deque.capacity());
+        System.out.println("Size: " + deque.size() + ", remaining capacity: "
+                                   + deque.remainingCapacity());
+
+        System.out.println("Offered items 3 and 4, then 5: "
+                                   + deque.offerLast(3) + " "
+                                   + deque.offerFirst(4) + " "
+                                   + deque.offerLast(5));
+
+        try {
+
+            deque.addLast(5);
+        }
+        catch (IllegalStateException e) {
+
+            System.out.println("Caught exception adding item to the last: "
+                                       + e.getMessage());
+        }
+
+        System.out.println("Removed item from first: " + deque.takeFirst());
+        System.out.println("Removed item from last: " + deque.takeLast());
+
+        StringBuilder items = new StringBuilder();
+        deque.forEach(item -> items.append(' ').append(item));
+        System.out.println("Items in deque (first to last):" + items);
+
+        deque.removeFirst();
+        deque.removeLast();
+        System.out.println("Polled for 10 ms from an empty deque: "
+                                   + deque.pollFirst(10,
+                                                     TimeUnit.MILLISECONDS));
+
+        // Test producers and consumers on virtual threads, which wait on
+        // the deque both when it is full and when it is empty
+        final int threads = 4;
+        final int perThread = 100_000;
+        final long[] sums = new long[threads];
+        Thread[] workers = new Thread[2 * threads];
+        for (int i = 0; i < threads; i++) {
+
+            final int id = i;
+            workers[i] = Thread.ofVirtual().start(() -> {
+
+                try {
+
+                    for (int j = 1; j <= perThread; j++) {
+
+                        if (j % 2 == 0) {
+
+                            deque.putLast(j);
+                        }
+                        else {
+
+                            deque.putFirst(j);
+                        }
+                    }
+                }
+                catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+            });
+            workers[threads + i] = Thread.ofVirtual().start(() -> {
+
+                try {
+
+                    for (int j = 0; j < perThread; j++) {
+
+                        sums[id] += j % 2 == 0 ? deque.takeFirst()
+                                               : deque.takeLast();
+                    }
+                }
+                catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        for (Thread worker : workers) {
+
+            worker.join();
+        }
+
+        long sum = 0;
+        for (long s : sums) {
+
+            sum += s;
+        }
+        System.out.println(threads + " producers and " + threads
+                                   + " consumers passed " + threads * perThread
+                                   + " items, sum: " + sum);
+
+        // Test drainTo and streams while another thread polls the deque,
+        // so that it may empty between any two steps
+        final int drains = 10_000;
+        final int[] drained = new int[2];
+        int offered = 0;
+        Thread poller = Thread.ofPlatform().start(() -> {
+
+            for (int i = 0; i < drains; i++) {
+
+                drained[1] += deque.pollFirst() == null ? 0 : 1;
+                Thread.yield();
+            }
+        });
+        for (int i = 0; i < drains; i++) {
+
+            offered += deque.offerLast(i) ? 1 : 0;
+            drained[0] += deque.drainTo(item -> { }, 1);
+            offered += deque.offerLast(i) ? 1 : 0;
+            deque.stream().toArray();
+            Thread.yield();
+        }
+        poller.join();
+        drained[0] += deque.drainTo(item -> { }, Integer.MAX_VALUE);
+        System.out.println("Drained and polled every offered item from two "
+                                   + "threads: "
+                                   + (drained[0] + drained[1] == offered));
+
+        // Test exceptions - remove from first
+        try {
+
+            deque.removeFirst();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while removing from first: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - add null item to first
+        try {
+
+            deque.putFirst(null);
+        }
+        catch (IllegalArgumentException e) {
+
+            System.out.println("Caught exception adding item to the first: "
+                                       + e.getMessage());
+        }
+    }
+}
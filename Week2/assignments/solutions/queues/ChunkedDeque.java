@@ -0,0 +1,643 @@
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/******************************************************************************
+ *  Compilation:  javac ChunkedDeque.java
+ *  Execution:    java ChunkedDeque
+ *  Dependencies: DequeModel.java
+ *
+ *  <p>A double-ended queue with the same API as Deque, implemented as an
+ *  unrolled linked list: a doubly linked list of blocks of BLOCK_SIZE items
+ *  each. The items run from index headIndex of the first block to index
+ *  tailIndex - 1 of the last block, filling every block in between.
+ *
+ *  The deque grows and shrinks one block at a time. A block that empties
+ *  is unlinked and kept in a small pool of free blocks, from which the
+ *  next block needed at either end is taken, so a deque whose size swings
+ *  back and forth across a block boundary allocates nothing. Unlike
+ *  ResizingArrayDeque, no operation ever copies the items, so the worst
+ *  operation costs one block allocation, however large the deque. Compared
+ *  with Deque, which allocates a node per item, a block costs its links
+ *  once per BLOCK_SIZE items, and the iterator reads the items of a block
+ *  from consecutive memory. The spliterator splits its items in halves,
+ *  walking one block link per BLOCK_SIZE items to find the middle.</p>
+ *
+ *  % java ChunkedDeque
+ *  ------------------------------
+ *  Added item 1 to the first
+ *  Added item 2 to the first
+ *  Added item 3 to the last
+ *  Size: 3
+ *  Items in deque (first to last):
+ *  2
+ *  1
+ *  3
+ *  Removed item from first: 2
+ *  Removed item from last: 3
+ *  Size: 1
+ *  Items in deque (first to last):
+ *  1
+ *  Removed item from first: 1
+ *  Size: 0
+ *  Is deque empty? true
+ *  Added 1000 items to the first, blocks: 5
+ *  Removed 900 items from the last, blocks: 1, pooled: 4
+ *  First and last: 999 900
+ *  Caught exception while removing from first: Deque is empty.
+ *  Caught exception while removing from last: Deque is empty.
+ *  Caught exception adding item to the first: Item cannot be null.
+ *  Caught exception adding item to the last: Item cannot be null.
+ *  Caught exception while removing item: Operation not supported.
+ *  Caught exception while iterating: No more items to return.
+ *  ------------------------------
+ ******************************************************************************/
+
+public class ChunkedDeque<Item> implements DequeModel<Item> {
+
+    /**
+     * The number of items in a block.
+     */
+    public static final int BLOCK_SIZE = 256;
+
+    // most free blocks kept for reuse
+    private static final int POOL_CAPACITY = 4;
+
+    // first and last blocks, the same block when there is only one
+    private Block first;
+    private Block last;
+
+    // index of the first item in the first block
+    private int headIndex;
+
+    // one past the index of the last item in the last block
+    private int tailIndex;
+
+    // number of items on the deque
+    private int size;
+
+    // number of blocks linked from first to last
+    private int blocks;
+
+    // free blocks, linked through next, all of their slots null
+    private Block pool;
+    private int pooled;
+
+    /**
+     * Block class to hold BLOCK_SIZE items in a doubly linked list of blocks.
+     */
+    private static class Block {
+        final Object[] items = new Object[BLOCK_SIZE];
+        Block next;
+        Block prev;
+    }
+
+    /**
+     * Construct an empty deque.
+     */
+    public ChunkedDeque() {
+
+        first = new Block();
+        last = first;
+        blocks = 1;
+        recenter();
+    }
+
+    /**
+     * Check if the deque is empty (contains no elements).
+     *
+     * @return true if the deque is empty, false otherwise
+     */
+    public boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the deque.
+     *
+     * @return the number of items on the deque
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Return the number of blocks holding the items.
+     *
+     * @return the number of blocks linked from the first to the last
+     */
+    public int blocks() {
+
+        return blocks;
+    }
+
+    /**
+     * Return the number of free blocks kept for reuse.
+     *
+     * @return the number of blocks in the pool
+     */
+    public int pooledBlocks() {
+
+        return pooled;
+    }
+
+    /**
+     * Add an item to the first of the deque.
+     *
+     * @param item the item to be enqueued to the first of the deque
+     * @throws IllegalArgumentException if the item is null
+     */
+    public void addFirst(Item item) {
+
+        if (item == null) {
+
+            throw new IllegalArgumentException("Item cannot be null.");
+        }
+
+        if (headIndex == 0) {
+
+            final Block block = obtain();
+            block.next = first;
+            first.prev = block;
+            first = block;
+            headIndex = BLOCK_SIZE;
+        }
+
+        first.items[--headIndex] = item;
+        size++;
+    }
+
+    /**
+     * Add an item to the last of the deque.
+     *
+     * @param item the item to be enqueued to the last of the deque
+     * @throws IllegalArgumentException if the item is null
+     */
+    public void addLast(Item item) {
+
+        if (item == null) {
+
+            throw new IllegalArgumentException("Item cannot be null.");
+        }
+
+        if (tailIndex == BLOCK_SIZE) {
+
+            final Block block = obtain();
+            block.prev = last;
+            last.next = block;
+            last = block;
+            tailIndex = 0;
+        }
+
+        last.items[tailIndex++] = item;
+        size++;
+    }
+
+    /**
+     * Remove and return the item from the first of the deque.
+     *
+     * @return the item removed from the first of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    public Item removeFirst() {
+
+        if (isEmpty()) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+
+        final Item item = (Item) first.items[headIndex];
+
+        // clear the slot to avoid loitering
+        first.items[headIndex++] = null;
+        size--;
+
+        if (size == 0) {
+
+            recenter();
+        }
+        else if (headIndex == BLOCK_SIZE) {
+
+            final Block empty = first;
+            first = first.next;
+            first.prev = null;
+            release(empty);
+            headIndex = 0;
+        }
+
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the last of the deque.
+     *
+     * @return the item removed from the last of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    public Item removeLast() {
+
+        if (isEmpty()) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+
+        final Item item = (Item) last.items[--tailIndex];
+
+        // clear the slot to avoid loitering
+        last.items[tailIndex] = null;
+        size--;
+
+        if (size == 0) {
+
+            recenter();
+        }
+        else if (tailIndex == 0) {
+
+            final Block empty = last;
+            last = last.prev;
+            last.next = null;
+            release(empty);
+            tailIndex = BLOCK_SIZE;
+        }
+
+        return item;
+    }
+
+    /**
+     * Start an empty deque over from the middle of its only block, so it can
+     * grow in both directions before it needs another block.
+     */
+    private void recenter() {
+
+        headIndex = BLOCK_SIZE / 2;
+        tailIndex = BLOCK_SIZE / 2;
+    }
+
+    /**
+     * Return a free block, from the pool if it has one.
+     *
+     * @return an unlinked block with every slot null
+     */
+    private Block obtain() {
+
+        blocks++;
+        if (pool == null) {
+
+            return new Block();
+        }
+
+        final Block block = pool;
+        pool = block.next;
+        block.next = null;
+        pooled--;
+        return block;
+    }
+
+    /**
+     * Keep an unlinked block for reuse if the pool has room for it.
+     *
+     * @param block the block, with every slot null
+     */
+    private void release(Block block) {
+
+        blocks--;
+        block.prev = null;
+        if (pooled < POOL_CAPACITY) {
+
+            block.next = pool;
+            pool = block;
+            pooled++;
+        }
+        else {
+
+            block.next = null;
+        }
+    }
+
+    /**
+     * Obtain iterator to iterate over items in order from first to last.
+     *
+     * @return an iterator over items in order from first to last
+     */
+    public Iterator<Item> iterator() {
+
+        return new DequeIterator();
+    }
+
+    /**
+     * Iterator class to iterate over items of a deque in order from first to
+     * last, one block after the other.
+     */
+    private class DequeIterator implements Iterator<Item> {
+
+        private Object[] items = first.items;
+        private Block block = first;
+        private int index = headIndex;
+        private int remaining = size;
+
+        /**
+         * Check if there are more items to return.
+         *
+         * @return true if there are more items to return, false otherwise
+         */
+        public boolean hasNext() {
+
+            return remaining > 0;
+        }
+
+        /**
+         * Return the next item in the deque.
+         *
+         * @return the next item in the deque
+         * @throws java.util.NoSuchElementException if there are no more items
+         */
+        public Item next() {
+
+            if (!hasNext()) {
+
+                throw new java.util.NoSuchElementException(
+                        "No more items to return.");
+            }
+
+            if (index == BLOCK_SIZE) {
+
+                block = block.next;
+                items = block.items;
+                index = 0;
+            }
+
+            remaining--;
+            return (Item) items[index++];
+        }
+
+        public void remove() {
+
+            throw new UnsupportedOperationException("Operation not supported.");
+        }
+    }
+
+    /**
+     * Obtain a spliterator over the items in order from first to last, which
+     * splits them in halves. The deque must not be changed while it is in
+     * use.
+     *
+     * @return an ORDERED, SIZED, SUBSIZED and NONNULL spliterator
+     */
+    public Spliterator<Item> spliterator() {
+
+        return new DequeSpliterator<Item>(first, headIndex, size);
+    }
+
+    /**
+     * Spliterator class to traverse and split a run of consecutive items,
+     * one block after the other.
+     */
+    private static class DequeSpliterator<Item> implements Spliterator<Item> {
+
+        private Block block;
+        private int index;
+        private int remaining;
+
+        /**
+         * Construct a spliterator over a run of items.
+         *
+         * @param block     the block of the first item
+         * @param index     the index of the first item in its block
+         * @param remaining the number of items in the run
+         */
+        DequeSpliterator(Block block, int index, int remaining) {
+
+            this.block = block;
+            this.index = index;
+            this.remaining = remaining;
+        }
+
+        /**
+         * Pass the next item to the action, if there is one.
+         *
+         * @param action the action to perform on the item
+         * @return true if there was an item, false otherwise
+         */
+        public boolean tryAdvance(Consumer<? super Item> action) {
+
+            if (remaining == 0) {
+
+                return false;
+            }
+
+            if (index == BLOCK_SIZE) {
+
+                block = block.next;
+                index = 0;
+            }
+
+            remaining--;
+            action.accept((Item) block.items[index++]);
+            return true;
+        }
+
+        /**
+         * Pass all the remaining items to the action, in order.
+         *
+         * @param action the action to perform on each item
+         */
+        public void forEachRemaining(Consumer<? super Item> action) {
+
+            Block current = block;
+            int from = index;
+            int count = remaining;
+            remaining = 0;
+
+            while (count > 0) {
+
+                if (from == BLOCK_SIZE) {
+
+                    current = current.next;
+                    from = 0;
+                }
+
+                final Object[] items = current.items;
+                final int to = Math.min(BLOCK_SIZE, from + count);
+                for (int i = from; i < to; i++) {
+
+                    action.accept((Item) items[i]);
+                }
+
+                count -= to - from;
+                from = to;
+            }
+
+            block = current;
+            index = from;
+        }
+
+        /**
+         * Split off the first half of the remaining items.
+         *
+         * @return a spliterator over the first half, or null if there are
+         *         fewer than two items
+         */
+        public Spliterator<Item> trySplit() {
+
+            if (remaining < 2) {
+
+                return null;
+            }
+
+            final int half = remaining / 2;
+            final DequeSpliterator<Item> prefix =
+                    new DequeSpliterator<Item>(block, index, half);
+
+            // the second half starts within the blocks, as it is not empty
+            index += half;
+            while (index >= BLOCK_SIZE) {
+
+                block = block.next;
+                index -= BLOCK_SIZE;
+            }
+            remaining -= half;
+
+            return prefix;
+        }
+
+        public long estimateSize() {
+
+            return remaining;
+        }
+
+        public int characteristics() {
+
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * Test the deque implementation.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+
+        ChunkedDeque<Integer> deque = new ChunkedDeque<Integer>();
+        deque.addFirst(1);
+        System.out.println("Added item 1 to the first");
+        deque.addFirst(2);
+        System.out.println("Added item 2 to the first");
+        deque.addLast(3);
+        System.out.println("Added item 3 to the last");
+        System.out.println("Size: " + deque.size());
+
+        System.out.println("Items in deque (first to last):");
+        for (int item : deque) {
+
+            System.out.println(item);
+        }
+
+        System.out.println("Removed item from first: " + deque.removeFirst());
+        System.out.println("Removed item from last: " + deque.removeLast());
+        System.out.println("Size: " + deque.size());
+
+        System.out.println("Items in deque (first to last):");
+        for (int item : deque) {
+
+            System.out.println(item);
+        }
+
+        System.out.println("Removed item from first: " + deque.removeFirst());
+        System.out.println("Size: " + deque.size());
+        System.out.println("Is deque empty? " + deque.isEmpty());
+
+        // Test growing and shrinking one block at a time
+        for (int i = 0; i < 1000; i++) {
+
+            deque.addFirst(i);
+        }
+        System.out.println("Added 1000 items to the first, blocks: "
+                                   + deque.blocks());
+
+        for (int i = 0; i < 900; i++) {
+
+            deque.removeLast();
+        }
+        System.out.println("Removed 900 items from the last, blocks: "
+                                   + deque.blocks() + ", pooled: "
+                                   + deque.pooledBlocks());
+        System.out.println("First and last: " + deque.removeFirst() + " "
+                                   + deque.removeLast());
+
+        while (!deque.isEmpty()) {
+
+            deque.removeFirst();
+        }
+
+        // Test exceptions - remove from first
+        try {
+
+            deque.removeFirst();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while removing from first: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - remove from last
+        try {
+
+            deque.removeLast();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while removing from last: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - add null item to first
+        try {
+
+            deque.addFirst(null);
+        }
+        catch (IllegalArgumentException e) {
+
+            System.out.println("Caught exception adding item to the first: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - add null item to last
+        try {
+
+            deque.addLast(null);
+        }
+        catch (IllegalArgumentException e) {
+
+            System.out.println("Caught exception adding item to the last: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - remove from empty deque using iterator
+        try {
+
+            Iterator<Integer> it = deque.iterator();
+            it.remove();
+        }
+        catch (UnsupportedOperationException e) {
+
+            System.out.println("Caught exception while removing item: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - iterate over empty deque
+        try {
+
+            Iterator<Integer> it = deque.iterator();
+            it.next();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while iterating: "
+                                       + e.getMessage());
+        }
+    }
+}
@@ -1,4 +1,6 @@
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /******************************************************************************
  *  Compilation:  javac Deque.java
@@ -11,7 +13,15 @@ import java.util.Iterator;
  *  The deque implementation in this class uses a doubly linked list to store
  *  items. This allows for constant time operations for adding and removing
  *  items from either end of the deque. The iterator iterates over items in
- *  order from first to last.</p>
+ *  order from first to last. ResizingArrayDeque implements the same
+ *  DequeModel API on a ring buffer, without an allocation per item.
+ *
+ *  The bulk adds check all of the items before they link any of them, so
+ *  they add either all of the items or none. The spliterator knows how
+ *  many items it covers, and splits them in halves by walking to the middle
+ *  node, so that a parallel stream gets equal shares of the items. The walk
+ *  costs half a traversal of the part being split, paid before the halves
+ *  run in parallel.</p>
  *
  *  % java Deque
  *  ------------------------------
@@ -31,6 +41,11 @@ import java.util.Iterator;
  *  Removed item from first: 1
  *  Size: 0
  *  Is deque empty? true
+ *  Added items 1 to 5 to the last and 6 to 8 to the first
+ *  Items in deque (first to last): 6 7 8 1 2 3 4 5
+ *  Drained 3 items: 6 7 8
+ *  Sum of 1 to 1000000 in parallel: 500000500000
+ *  Caught exception adding items to the last: Item cannot be null.
  *  Caught exception while removing from first: Deque is empty.
  *  Caught exception while removing from last: Deque is empty.
  *  Caught exception adding item to the first: Item cannot be null.
@@ -40,7 +55,7 @@ import java.util.Iterator;
  *  ------------------------------
  ******************************************************************************/
 
-public class Deque<Item> implements Iterable<Item> {
+public class Deque<Item> implements DequeModel<Item> {
 
     private Node first;
     private Node last;
@@ -216,6 +231,93 @@ public class Deque<Item> implements Iterable<Item> {
         return item;
     }
 
+    /**
+     * Add the items to the first of the deque, so that they come first in
+     * the order they have in the array. Nothing is added if an item is null.
+     *
+     * @param items the items to be added to the first of the deque
+     * @throws IllegalArgumentException if the array or an item is null
+     */
+    public void addAllFirst(Item[] items) {
+
+        checkItems(items);
+
+        // link the nodes from the last item to the first
+        for (int i = items.length - 1; i >= 0; i--) {
+
+            final Node node = new Node();
+            node.item = items[i];
+            node.next = first;
+
+            if (first == null) {
+
+                last = node;
+            }
+            else {
+
+                first.prev = node;
+            }
+
+            first = node;
+        }
+
+        size += items.length;
+    }
+
+    /**
+     * Add the items to the last of the deque, in the order they have in the
+     * array. Nothing is added if an item is null.
+     *
+     * @param items the items to be added to the last of the deque
+     * @throws IllegalArgumentException if the array or an item is null
+     */
+    public void addAllLast(Item[] items) {
+
+        checkItems(items);
+
+        for (Item item : items) {
+
+            final Node node = new Node();
+            node.item = item;
+            node.prev = last;
+
+            if (last == null) {
+
+                first = node;
+            }
+            else {
+
+                last.next = node;
+            }
+
+            last = node;
+        }
+
+        size += items.length;
+    }
+
+    /**
+     * Check that an array of items to add, and every item in it, is not null.
+     *
+     * @param items the items to be added
+     * @throws IllegalArgumentException if the array or an item is null
+     */
+    private static void checkItems(Object[] items) {
+
+        if (items == null) {
+
+            throw new IllegalArgumentException("Items cannot be null.");
+        }
+
+        for (Object item : items) {
+
+            if (item == null) {
+
+                throw new IllegalArgumentException("Item cannot be null.");
+            }
+        }
+    }
+
     /**
      * Obtain iterator to iterate over items in order from first to last.
      *
@@ -269,6 +371,113 @@ public class Deque<Item> implements Iterable<Item> {
         }
     }
 
+    /**
+     * Obtain a spliterator over the items in order from first to last, which
+     * splits them in halves. The deque must not be changed while it is in
+     * use.
+     *
+     * @return an ORDERED, SIZED, SUBSIZED and NONNULL spliterator
+     */
+    public Spliterator<Item> spliterator() {
+
+        return new DequeSpliterator(first, size);
+    }
+
+    /**
+     * Spliterator class to traverse and split a run of consecutive nodes.
+     */
+    private class DequeSpliterator implements Spliterator<Item> {
+
+        private Node current;
+        private int remaining;
+
+        /**
+         * Construct a spliterator over a run of nodes.
+         *
+         * @param current the first node of the run
+         * @param remaining the number of nodes in the run
+         */
+        DequeSpliterator(Node current, int remaining) {
+
+            this.current = current;
+            this.remaining = remaining;
+        }
+
+        /**
+         * Pass the next item to the action, if there is one.
+         *
+         * @param action the action to perform on the item
+         * @return true if there was an item, false otherwise
+         */
+        public boolean tryAdvance(Consumer<? super Item> action) {
+
+            if (remaining == 0) {
+
+                return false;
+            }
+
+            final Item item = current.item;
+            current = current.next;
+            remaining--;
+            action.accept(item);
+            return true;
+        }
+
+        /**
+         * Pass all the remaining items to the action, in order.
+         *
+         * @param action the action to perform on each item
+         */
+        public void forEachRemaining(Consumer<? super Item> action) {
+
+            Node node = current;
+            int count = remaining;
+            current = null;
+            remaining = 0;
+
+            for (; count > 0; count--) {
+
+                action.accept(node.item);
+                node = node.next;
+            }
+        }
+
+        /**
+         * Split off the first half of the remaining items.
+         *
+         * @return a spliterator over the first half, or null if there are
+         *         fewer than two items
+         */
+        public Spliterator<Item> trySplit() {
+
+            if (remaining < 2) {
+
+                return null;
+            }
+
+            final int half = remaining / 2;
+            final DequeSpliterator prefix = new DequeSpliterator(current, half);
+
+            for (int i = 0; i < half; i++) {
+
+                current = current.next;
+            }
+            remaining -= half;
+
+            return prefix;
+        }
+
+        public long estimateSize() {
+
+            return remaining;
+        }
+
+        public int characteristics() {
+
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     /**
      * Test the deque implementation.
      *
@@ -305,6 +514,45 @@ public class Deque<Item> implements Iterable<Item> {
         System.out.println("Size: " + deque.size());
         System.out.println("Is deque empty? " + deque.isEmpty());
 
+        // Test bulk operations and a parallel stream
+        deque.addAllLast(new Integer[] { 1, 2, 3, 4, 5 });
+        deque.addAllFirst(java.util.List.of(6, 7, 8));
+        System.out.println("Added items 1 to 5 to the last and 6 to 8 to "
+                                   + "the first");
+
+        StringBuilder items = new StringBuilder();
+        deque.forEach(item -> items.append(' ').append(item));
+        System.out.println("Items in deque (first to last):" + items);
+
+        StringBuilder drained = new StringBuilder();
+        int count = deque.drainTo(item -> drained.append(' ').append(item), 3);
+        System.out.println("Drained " + count + " items:" + drained);
+
+        while (!deque.isEmpty()) {
+
+            deque.removeFirst();
+        }
+
+        Deque<Long> numbers = new Deque<Long>();
+        for (long i = 1; i <= 1_000_000; i++) {
+
+            numbers.addLast(i);
+        }
+        System.out.println("Sum of 1 to 1000000 in parallel: "
+                                   + numbers.parallelStream()
+                                            .mapToLong(Long::longValue).sum());
+
+        // Test exceptions - add an array holding a null item
+        try {
+
+            deque.addAllLast(new Integer[] { 1, null });
+        }
+        catch (IllegalArgumentException e) {
+
+            System.out.println("Caught exception adding items to the last: "
+                                       + e.getMessage());
+        }
+
         // Test exceptions - remove from first
         try {
 
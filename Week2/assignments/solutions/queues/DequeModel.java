@@ -0,0 +1,235 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/******************************************************************************
+ *  Compilation:  javac DequeModel.java
+ *
+ *  The DequeModel interface is the API shared by the deque implementations
+ *  (the linked-list Deque, the ring-buffer ResizingArrayDeque and the
+ *  block-list ChunkedDeque). Clients such as DequeBenchmark are written
+ *  against this interface so that the implementation can be swapped
+ *  without changing the client code.
+ *
+ *  The bulk operations and the spliterator have default implementations
+ *  in terms of the other methods, which the implementations override where
+ *  they can do better: ResizingArrayDeque resizes at most once per bulk
+ *  add, and all three split their spliterators in halves, so that a
+ *  parallel stream gets equal shares of the items, where the default
+ *  spliterator only splits off growing batches copied from the iterator.
+ ******************************************************************************/
+
+public interface DequeModel<Item> extends Iterable<Item> {
+
+    /**
+     * Check if the deque is empty (contains no elements).
+     *
+     * @return true if the deque is empty, false otherwise
+     */
+    boolean isEmpty();
+
+    /**
+     * Return the number of items on the deque.
+     *
+     * @return the number of items on the deque
+     */
+    int size();
+
+    /**
+     * Add an item to the first of the deque.
+     *
+     * @param item the item to be enqueued to the first of the deque
+     * @throws IllegalArgumentException if the item is null
+     */
+    void addFirst(Item item);
+
+    /**
+     * Add an item to the last of the deque.
+     *
+     * @param item the item to be enqueued to the last of the deque
+     * @throws IllegalArgumentException if the item is null
+     */
+    void addLast(Item item);
+
+    /**
+     * Remove and return the item from the first of the deque.
+     *
+     * @return the item removed from the first of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    Item removeFirst();
+
+    /**
+     * Remove and return the item from the last of the deque.
+     *
+     * @return the item removed from the last of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    Item removeLast();
+
+    /**
+     * Obtain iterator to iterate over items in order from first to last.
+     *
+     * @return an iterator over items in order from first to last
+     */
+    Iterator<Item> iterator();
+
+    /**
+     * Add the items to the first of the deque, so that they come first in
+     * the order they have in the array. Nothing is added if an item is null.
+     *
+     * @param items the items to be added to the first of the deque
+     * @throws IllegalArgumentException if the array or an item is null
+     */
+    default void addAllFirst(Item[] items) {
+
+        if (items == null) {
+
+            throw new IllegalArgumentException("Items cannot be null.");
+        }
+
+        for (Item item : items) {
+
+            if (item == null) {
+
+                throw new IllegalArgumentException("Item cannot be null.");
+            }
+        }
+
+        for (int i = items.length - 1; i >= 0; i--) {
+
+            addFirst(items[i]);
+        }
+    }
+
+    /**
+     * Add the items to the first of the deque, so that they come first in
+     * the order of the collection's iterator.
+     *
+     * @param items the items to be added to the first of the deque
+     * @throws IllegalArgumentException if the collection or an item is null
+     */
+    default void addAllFirst(Collection<? extends Item> items) {
+
+        if (items == null) {
+
+            throw new IllegalArgumentException("Items cannot be null.");
+        }
+
+        addAllFirst((Item[]) items.toArray());
+    }
+
+    /**
+     * Add the items to the last of the deque, in the order they have in the
+     * array. Nothing is added if an item is null.
+     *
+     * @param items the items to be added to the last of the deque
+     * @throws IllegalArgumentException if the array or an item is null
+     */
+    default void addAllLast(Item[] items) {
+
+        if (items == null) {
+
+            throw new IllegalArgumentException("Items cannot be null.");
+        }
+
+        for (Item item : items) {
+
+            if (item == null) {
+
+                throw new IllegalArgumentException("Item cannot be null.");
+            }
+        }
+
+        for (Item item : items) {
+
+            addLast(item);
+        }
+    }
+
+    /**
+     * Add the items to the last of the deque, in the order of the
+     * collection's iterator.
+     *
+     * @param items the items to be added to the last of the deque
+     * @throws IllegalArgumentException if the collection or an item is null
+     */
+    default void addAllLast(Collection<? extends Item> items) {
+
+        if (items == null) {
+
+            throw new IllegalArgumentException("Items cannot be null.");
+        }
+
+        addAllLast((Item[]) items.toArray());
+    }
+
+    /**
+     * Remove up to max items from the first of the deque and pass them to
+     * the consumer, in order from first to last. Each item is removed before
+     * the consumer sees it.
+     *
+     * @param consumer the consumer of the removed items
+     * @param max      the largest number of items to remove
+     * @return the number of items removed
+     * @throws IllegalArgumentException if the consumer is null or max is
+     *                                  negative
+     */
+    default int drainTo(Consumer<? super Item> consumer, int max) {
+
+        if (consumer == null) {
+
+            throw new IllegalArgumentException("Consumer cannot be null.");
+        }
+
+        if (max < 0) {
+
+            throw new IllegalArgumentException("Max cannot be negative.");
+        }
+
+        int drained = 0;
+        while (drained < max && !isEmpty()) {
+
+            consumer.accept(removeFirst());
+            drained++;
+        }
+
+        return drained;
+    }
+
+    /**
+     * Obtain a spliterator over the items in order from first to last, which
+     * knows its size. The deque must not be changed while it is in use.
+     *
+     * @return an ORDERED, SIZED, SUBSIZED and NONNULL spliterator
+     */
+    default Spliterator<Item> spliterator() {
+
+        final int characteristics = Spliterator.ORDERED | Spliterator.NONNULL;
+        return Spliterators.spliterator(iterator(), size(), characteristics);
+    }
+
+    /**
+     * Return a sequential stream of the items in order from first to last.
+     *
+     * @return a stream of the items
+     */
+    default Stream<Item> stream() {
+
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Return a parallel stream of the items, split by the spliterator.
+     *
+     * @return a parallel stream of the items
+     */
+    default Stream<Item> parallelStream() {
+
+        return StreamSupport.stream(spliterator(), true);
+    }
+}
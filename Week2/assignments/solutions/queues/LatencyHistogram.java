@@ -0,0 +1,128 @@
+/******************************************************************************
+ *  Compilation:  javac LatencyHistogram.java
+ *
+ *  A histogram of latencies in nanoseconds for the benchmarks, with 16
+ *  buckets of equal width per power of two, so that a percentile is read
+ *  to within 1/16 in constant memory however many latencies are counted.
+ *  The maximum is kept exactly. Histograms filled by different threads are
+ *  combined with add.
+ ******************************************************************************/
+
+public class LatencyHistogram {
+
+    // buckets per power of two, a power of two
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BITS = 4;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long total;
+    private long max;
+
+    /**
+     * Count one latency.
+     *
+     * @param nanos the latency in nanoseconds, not negative
+     */
+    public void record(long nanos) {
+
+        counts[index(nanos)]++;
+        total++;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Add the latencies counted by another histogram to this one.
+     *
+     * @param other the other histogram
+     */
+    public void add(LatencyHistogram other) {
+
+        for (int i = 0; i < counts.length; i++) {
+
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Return the bucket of a latency: values below SUB_BUCKETS have a bucket
+     * each, and every power of two above is split in SUB_BUCKETS.
+     *
+     * @param nanos the latency in nanoseconds, not negative
+     * @return the index of the bucket
+     */
+    private static int index(long nanos) {
+
+        if (nanos < SUB_BUCKETS) {
+
+            return (int) nanos;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Return the largest latency of a bucket.
+     *
+     * @param index the index of the bucket
+     * @return the largest latency counted in the bucket
+     */
+    private static long highest(int index) {
+
+        if (index < SUB_BUCKETS) {
+
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index & (SUB_BUCKETS - 1);
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+
+    /**
+     * Return the latency below which the given fraction of all latencies
+     * fall, rounded up to the end of its bucket but not above the maximum.
+     *
+     * @param fraction the fraction, between 0 and 1
+     * @return the latency in nanoseconds
+     */
+    public long percentile(double fraction) {
+
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+
+                return Math.min(highest(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Return the number of latencies counted.
+     *
+     * @return the number of latencies
+     */
+    public long total() {
+
+        return total;
+    }
+
+    /**
+     * Return the largest latency counted.
+     *
+     * @return the largest latency in nanoseconds
+     */
+    public long max() {
+
+        return max;
+    }
+}
@@ -0,0 +1,388 @@
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/******************************************************************************
+ *  Compilation:  javac LongDeque.java
+ *  Execution:    java LongDeque
+ *
+ *  <p>A double-ended queue of long values, with the same operations as Deque
+ *  but without boxing. The values are stored in a power-of-two circular
+ *  buffer of longs, as in ResizingArrayDeque, so a value takes 8 bytes
+ *  (up to 32 while the buffer is a quarter full, before it halves)
+ *  instead of a boxed Long and a linked node, about 48 bytes.
+ *
+ *  The iterator is a PrimitiveIterator.OfLong, whose nextLong returns the
+ *  values without boxing, and forEach passes every value to a LongConsumer
+ *  in two tight loops over the buffer, one on each side of the wrap-around
+ *  point.</p>
+ *
+ *  % java LongDeque
+ *  ------------------------------
+ *  Added 1 to the first
+ *  Added 2 to the first
+ *  Added 3 to the last
+ *  Size: 3
+ *  Values in deque (first to last): 2 1 3
+ *  Removed from first: 2
+ *  Removed from last: 3
+ *  Size: 1
+ *  Removed from first: 1
+ *  Is deque empty? true
+ *  Sum of 0..999 added to the first: 499500
+ *  Caught exception while removing from first: Deque is empty.
+ *  Caught exception while removing from last: Deque is empty.
+ *  Caught exception while removing value: Operation not supported.
+ *  Caught exception while iterating: No more values to return.
+ *  ------------------------------
+ ******************************************************************************/
+
+public class LongDeque {
+
+    // smallest length of the array, a power of two
+    private static final int MIN_CAPACITY = 8;
+
+    // largest power-of-two length of an array
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // circular buffer, of power-of-two length
+    private long[] values;
+
+    // index of the first value
+    private int head;
+
+    // number of values on the deque
+    private int size;
+
+    /**
+     * Construct an empty deque.
+     */
+    public LongDeque() {
+
+        values = new long[MIN_CAPACITY];
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Check if the deque is empty (contains no values).
+     *
+     * @return true if the deque is empty, false otherwise
+     */
+    public boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    /**
+     * Return the number of values on the deque.
+     *
+     * @return the number of values on the deque
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Add a value to the first of the deque.
+     *
+     * @param value the value to be enqueued to the first of the deque
+     * @throws IllegalStateException if the deque holds 2^30 values already
+     */
+    public void addFirst(long value) {
+
+        if (size == values.length) {
+
+            grow();
+        }
+
+        head = (head - 1) & (values.length - 1);
+        values[head] = value;
+        size++;
+    }
+
+    /**
+     * Add a value to the last of the deque.
+     *
+     * @param value the value to be enqueued to the last of the deque
+     * @throws IllegalStateException if the deque holds 2^30 values already
+     */
+    public void addLast(long value) {
+
+        if (size == values.length) {
+
+            grow();
+        }
+
+        values[(head + size) & (values.length - 1)] = value;
+        size++;
+    }
+
+    /**
+     * Remove and return the value from the first of the deque.
+     *
+     * @return the value removed from the first of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    public long removeFirst() {
+
+        if (isEmpty()) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+
+        final long value = values[head];
+        head = (head + 1) & (values.length - 1);
+        size--;
+
+        shrinkIfSparse();
+
+        return value;
+    }
+
+    /**
+     * Remove and return the value from the last of the deque.
+     *
+     * @return the value removed from the last of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    public long removeLast() {
+
+        if (isEmpty()) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+
+        final long value = values[(head + size - 1) & (values.length - 1)];
+        size--;
+
+        shrinkIfSparse();
+
+        return value;
+    }
+
+    /**
+     * Double the length of the underlying array.
+     *
+     * @throws IllegalStateException if the array cannot grow any more
+     */
+    private void grow() {
+
+        if (values.length == MAX_CAPACITY) {
+
+            throw new IllegalStateException("Deque is full.");
+        }
+
+        resize(2 * values.length);
+    }
+
+    /**
+     * Halve the length of the underlying array when it is a quarter full.
+     */
+    private void shrinkIfSparse() {
+
+        if (values.length > MIN_CAPACITY && size == values.length / 4) {
+
+            resize(values.length / 2);
+        }
+    }
+
+    /**
+     * Move the values to an array of the given length, starting at index 0.
+     *
+     * @param capacity the new length of the underlying array, a power of two
+     */
+    private void resize(int capacity) {
+
+        long[] copy = new long[capacity];
+
+        // the values run from head to the end of the array, then wrap around
+        int firstPart = Math.min(size, values.length - head);
+        System.arraycopy(values, head, copy, 0, firstPart);
+        System.arraycopy(values, 0, copy, firstPart, size - firstPart);
+
+        values = copy;
+        head = 0;
+    }
+
+    /**
+     * Pass every value, in order from first to last, to the action.
+     *
+     * @param action the action to perform on each value
+     */
+    public void forEach(LongConsumer action) {
+
+        final long[] array = values;
+        final int firstPart = Math.min(size, array.length - head);
+        for (int i = head; i < head + firstPart; i++) {
+
+            action.accept(array[i]);
+        }
+
+        for (int i = 0; i < size - firstPart; i++) {
+
+            action.accept(array[i]);
+        }
+    }
+
+    /**
+     * Return the values in order from first to last.
+     *
+     * @return a new array of the values on the deque
+     */
+    public long[] toArray() {
+
+        long[] copy = new long[size];
+        int firstPart = Math.min(size, values.length - head);
+        System.arraycopy(values, head, copy, 0, firstPart);
+        System.arraycopy(values, 0, copy, firstPart, size - firstPart);
+        return copy;
+    }
+
+    /**
+     * Obtain iterator to iterate over values in order from first to last.
+     *
+     * @return an iterator over values in order from first to last, whose
+     *         nextLong does not box
+     */
+    public PrimitiveIterator.OfLong iterator() {
+
+        return new DequeIterator();
+    }
+
+    /**
+     * Iterator class to iterate over values of a deque in order from first
+     * to last.
+     */
+    private class DequeIterator implements PrimitiveIterator.OfLong {
+
+        // the iterator reads local copies of the fields, which the JIT can
+        // keep in registers
+        private final long[] array = values;
+        private final int first = head;
+        private final int count = size;
+        private int index = 0;
+
+        /**
+         * Check if there are more values to return.
+         *
+         * @return true if there are more values to return, false otherwise
+         */
+        public boolean hasNext() {
+
+            return index < count;
+        }
+
+        /**
+         * Return the next value in the deque.
+         *
+         * @return the next value in the deque
+         * @throws java.util.NoSuchElementException if there are no more values
+         */
+        public long nextLong() {
+
+            if (!hasNext()) {
+
+                throw new java.util.NoSuchElementException(
+                        "No more values to return.");
+            }
+
+            return array[(first + index++) & (array.length - 1)];
+        }
+
+        public void remove() {
+
+            throw new UnsupportedOperationException("Operation not supported.");
+        }
+    }
+
+    /**
+     * Test the deque implementation.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+
+        LongDeque deque = new LongDeque();
+        deque.addFirst(1);
+        System.out.println("Added 1 to the first");
+        deque.addFirst(2);
+        System.out.println("Added 2 to the first");
+        deque.addLast(3);
+        System.out.println("Added 3 to the last");
+        System.out.println("Size: " + deque.size());
+
+        System.out.print("Values in deque (first to last):");
+        PrimitiveIterator.OfLong values = deque.iterator();
+        while (values.hasNext()) {
+
+            System.out.print(" " + values.nextLong());
+        }
+        System.out.println();
+
+        System.out.println("Removed from first: " + deque.removeFirst());
+        System.out.println("Removed from last: " + deque.removeLast());
+        System.out.println("Size: " + deque.size());
+        System.out.println("Removed from first: " + deque.removeFirst());
+        System.out.println("Is deque empty? " + deque.isEmpty());
+
+        // Test growing across the wrap-around point, and forEach
+        for (int i = 0; i < 1000; i++) {
+
+            deque.addFirst(i);
+        }
+
+        final long[] sum = new long[1];
+        deque.forEach(value -> sum[0] += value);
+        System.out.println("Sum of 0..999 added to the first: " + sum[0]);
+
+        while (!deque.isEmpty()) {
+
+            deque.removeLast();
+        }
+
+        // Test exceptions - remove from first
+        try {
+
+            deque.removeFirst();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while removing from first: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - remove from last
+        try {
+
+            deque.removeLast();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while removing from last: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - remove using iterator
+        try {
+
+            deque.iterator().remove();
+        }
+        catch (UnsupportedOperationException e) {
+
+            System.out.println("Caught exception while removing value: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - iterate over empty deque
+        try {
+
+            deque.iterator().nextLong();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while iterating: "
+                                       + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,847 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.zip.CRC32C;
+
+/******************************************************************************
+ *  Compilation:  javac MappedDeque.java
+ *  Execution:    java MappedDeque file
+ *  Dependencies: DequeModel.java
+ *
+ *  <p>A double-ended queue of byte arrays that keeps its items in a memory
+ *  mapped file, so that they survive the process. Items of other types are
+ *  stored in serialized form, by an ObjectOutputStream or any other
+ *  encoding the caller chooses.
+ *
+ *  The file starts with a header page, followed by the data region, a ring
+ *  of capacity bytes, a power of two. Each item is stored as a record of
+ *  its length, the CRC-32C of its bytes, the bytes and its length again, so
+ *  that the records can be walked from either end. head and tail are byte
+ *  positions that never wrap, reduced with a mask to find their place in
+ *  the ring, and a record may wrap around the end of the ring.
+ *
+ *  The header holds two slots for the state of the deque: head, tail, the
+ *  number of items, a sequence number and the CRC-32C of all four. Every
+ *  operation first writes its record, then writes the new state to the
+ *  slot the current state is not in. A process that dies halfway through
+ *  an operation leaves the older slot intact, and its half-written slot
+ *  fails its checksum, so opening the file takes the valid slot with the
+ *  larger sequence number, in constant time, with nothing to replay.
+ *
+ *  The writes to the mapping reach the operating system at once, so they
+ *  survive the process being killed, but reach the disk only when they are
+ *  forced there. The deque forces its file after every syncEvery
+ *  operations, so that at most that many are lost if the machine goes
+ *  down, or only when sync or close is called if syncEvery is 0. Only the
+ *  records written since the last sync are forced, before the header. The
+ *  system may write pages back on its own in between, so after a power
+ *  failure a state may point to records that never reached the disk; the
+ *  checksum of a record is checked whenever it is read, and a record that
+ *  does not match throws.
+ *
+ *  Only one deque may have the file open at a time, which a lock on the
+ *  file enforces across processes. The deque is not thread-safe.</p>
+ *
+ *  % java MappedDeque /tmp/deque.bin
+ *  ------------------------------
+ *  Added "b", "c" to the last and "a" to the first
+ *  Size: 3, bytes used: 39
+ *  Items in deque (first to last): a b c
+ *  Removed from first: a
+ *  Removed from last: c
+ *  Reopened, size: 1, first: b
+ *  Filled 1000-byte items until full: 1036 items
+ *  Caught exception adding item to the last: Deque is full.
+ *  Emptied, reopened, is deque empty? true
+ *  Caught exception while removing from first: Deque is empty.
+ *  Caught exception adding item to the first: Item cannot be null.
+ *  Caught exception opening the file twice: Deque file is in use.
+ *  Caught exception after closing: Deque is closed.
+ *  ------------------------------
+ ******************************************************************************/
+
+public class MappedDeque implements DequeModel<byte[]>, Closeable {
+
+    // identifies the file as a deque, "MDEQ"
+    private static final int MAGIC = 0x4d444551;
+
+    private static final int VERSION = 1;
+
+    // bytes of the header, one page, before the data region
+    private static final int HEADER = 4096;
+
+    // offsets in the header
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SLOT_OFFSET = 64;
+
+    // bytes per state slot: sequence, head, tail, count and checksum
+    private static final int SLOT_SIZE = 32;
+    private static final int SLOT_CHECKED = 28;
+
+    // bytes of a record besides the item: length, checksum, length
+    private static final int FRAME = 12;
+
+    // smallest and largest capacity of the data region, powers of two
+    private static final int MIN_CAPACITY = 1 << 12;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int syncEvery;
+    private final CRC32C crc = new CRC32C();
+
+    // position of the first byte of the first record, never wraps
+    private long head;
+
+    // one past the position of the last byte of the last record
+    private long tail;
+
+    // number of items on the deque
+    private int size;
+
+    // sequence number of the current state
+    private long sequence;
+
+    // operations since the file was last forced to disk
+    private int unsynced;
+
+    // positions of the records written since the file was last forced
+    private long dirtyFrom = Long.MAX_VALUE;
+    private long dirtyTo = Long.MIN_VALUE;
+
+    private boolean closed;
+
+    /**
+     * Open the deque in the file, or create an empty deque there if the file
+     * does not exist or is empty, or its creation was cut short.
+     *
+     * @param file      the file of the deque
+     * @param capacity  the bytes of the data region of a new file, rounded up
+     *                  to a power of two; an existing file keeps its own
+     * @param syncEvery the number of operations between forcing the file to
+     *                  disk, or 0 to force it only on sync and close
+     * @throws IllegalArgumentException if capacity or syncEvery is out of
+     *                                  range
+     * @throws IOException if the file cannot be opened, is not a deque file
+     *                     or is in use by another deque
+     */
+    public MappedDeque(Path file, int capacity, int syncEvery)
+            throws IOException {
+
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+
+            throw new IllegalArgumentException(
+                    "Capacity must be between 1 and 2^30.");
+        }
+
+        if (syncEvery < 0) {
+
+            throw new IllegalArgumentException(
+                    "Sync interval cannot be negative.");
+        }
+
+        this.syncEvery = syncEvery;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+
+        try {
+
+            lock = lock(channel);
+            final int existing = readCapacity(channel);
+            if (existing == 0) {
+
+                this.capacity = Integer.highestOneBit(
+                        Math.max(MIN_CAPACITY, capacity) - 1) << 1;
+            }
+            else {
+
+                this.capacity = existing;
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                 HEADER + (long) this.capacity);
+
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+
+                // the magic number goes last, so a file whose creation was
+                // cut short is created again when it is next opened
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(CAPACITY_OFFSET, this.capacity);
+                publish();
+                force();
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+                force();
+            }
+            else {
+
+                recover();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lock the file against other deques, in this process or another one.
+     *
+     * @param channel the open file
+     * @return the lock
+     * @throws IOException if another deque holds the lock
+     */
+    private static FileLock lock(FileChannel channel) throws IOException {
+
+        FileLock lock;
+        try {
+
+            lock = channel.tryLock();
+        }
+        catch (OverlappingFileLockException e) {
+
+            lock = null;
+        }
+
+        if (lock == null) {
+
+            throw new IOException("Deque file is in use.");
+        }
+
+        return lock;
+    }
+
+    /**
+     * Read the capacity from the header of an existing file. A file without
+     * the magic number is only taken for a deque whose creation was cut
+     * short if its version and capacity are set and its size matches them,
+     * so that opening the wrong file never overwrites it.
+     *
+     * @param channel the open file
+     * @return the capacity of the data region, or 0 if the file is empty
+     * @throws IOException if the file is not a deque file
+     */
+    private static int readCapacity(FileChannel channel) throws IOException {
+
+        final long fileSize = channel.size();
+        if (fileSize == 0) {
+
+            return 0;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        channel.read(header, 0);
+        final int magic = header.getInt(MAGIC_OFFSET);
+        final int capacity = header.getInt(CAPACITY_OFFSET);
+        final boolean valid = header.getInt(VERSION_OFFSET) == VERSION
+                && capacity >= MIN_CAPACITY && capacity <= MAX_CAPACITY
+                && Integer.bitCount(capacity) == 1
+                && (magic == MAGIC && fileSize >= HEADER + (long) capacity
+                    || magic == 0 && fileSize == HEADER + (long) capacity);
+
+        if (!valid) {
+
+            throw new IOException("Not a deque file.");
+        }
+
+        return capacity;
+    }
+
+    /**
+     * Take the state from the valid slot with the larger sequence number.
+     *
+     * @throws IOException if neither slot is valid
+     */
+    private void recover() throws IOException {
+
+        boolean found = false;
+        for (int slot = 0; slot < 2; slot++) {
+
+            final int offset = SLOT_OFFSET + slot * SLOT_SIZE;
+            final long seq = buffer.getLong(offset);
+            if (checksum(offset) != buffer.getInt(offset + SLOT_CHECKED)
+                    || (found && seq <= sequence)) {
+
+                continue;
+            }
+
+            found = true;
+            sequence = seq;
+            head = buffer.getLong(offset + 8);
+            tail = buffer.getLong(offset + 16);
+            size = buffer.getInt(offset + 24);
+        }
+
+        if (!found || tail - head < 0 || tail - head > capacity || size < 0) {
+
+            throw new IOException("Deque file is corrupt.");
+        }
+    }
+
+    /**
+     * Write the current state to the slot the previous state is not in.
+     */
+    private void publish() {
+
+        sequence++;
+        final int offset = SLOT_OFFSET + (int) (sequence & 1) * SLOT_SIZE;
+        buffer.putLong(offset, sequence);
+        buffer.putLong(offset + 8, head);
+        buffer.putLong(offset + 16, tail);
+        buffer.putInt(offset + 24, size);
+        buffer.putInt(offset + SLOT_CHECKED, checksum(offset));
+
+        if (syncEvery > 0 && ++unsynced >= syncEvery) {
+
+            force();
+        }
+    }
+
+    /**
+     * Return the CRC-32C of the checked fields of a state slot.
+     *
+     * @param offset the offset of the slot in the header
+     * @return the checksum
+     */
+    private int checksum(int offset) {
+
+        crc.reset();
+        crc.update(buffer.slice(offset, SLOT_CHECKED));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Force the records written since the last sync, and then the header, to
+     * disk.
+     *
+     * @throws IllegalStateException if the deque is closed
+     */
+    public void sync() {
+
+        checkOpen();
+        force();
+    }
+
+    /**
+     * Force the records written since the last sync, and then the header, to
+     * disk, for sync and for the constructor, which must not call a method a
+     * subclass could override.
+     */
+    private void force() {
+
+        if (dirtyTo - dirtyFrom >= capacity) {
+
+            buffer.force(HEADER, capacity);
+        }
+        else if (dirtyFrom < dirtyTo) {
+
+            // the dirty range may wrap around the end of the ring
+            final int from = offset(dirtyFrom);
+            final int length = (int) (dirtyTo - dirtyFrom);
+            final int firstPart = Math.min(length, HEADER + capacity - from);
+            buffer.force(from, firstPart);
+            if (firstPart < length) {
+
+                buffer.force(HEADER, length - firstPart);
+            }
+        }
+
+        buffer.force(0, HEADER);
+        dirtyFrom = Long.MAX_VALUE;
+        dirtyTo = Long.MIN_VALUE;
+        unsynced = 0;
+    }
+
+    /**
+     * Force the deque to disk and close the file. The file stays mapped
+     * until the deque is garbage collected.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+
+        if (closed) {
+
+            return;
+        }
+
+        sync();
+        closed = true;
+        lock.release();
+        channel.close();
+    }
+
+    /**
+     * Check if the deque is empty (contains no elements).
+     *
+     * @return true if the deque is empty, false otherwise
+     */
+    public boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the deque.
+     *
+     * @return the number of items on the deque
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Return the bytes of the data region in use, including the records'
+     * lengths and checksums.
+     *
+     * @return the bytes used
+     */
+    public long usedBytes() {
+
+        return tail - head;
+    }
+
+    /**
+     * Return the bytes of the data region.
+     *
+     * @return the capacity of the data region
+     */
+    public int capacity() {
+
+        return capacity;
+    }
+
+    /**
+     * Add an item to the first of the deque.
+     *
+     * @param item the item to be enqueued to the first of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws IllegalStateException if the record of the item does not fit,
+     *                               or the deque is closed
+     */
+    public void addFirst(byte[] item) {
+
+        checkAdd(item);
+        head -= item.length + FRAME;
+        write(head, item);
+        size++;
+        publish();
+    }
+
+    /**
+     * Add an item to the last of the deque.
+     *
+     * @param item the item to be enqueued to the last of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws IllegalStateException if the record of the item does not fit,
+     *                               or the deque is closed
+     */
+    public void addLast(byte[] item) {
+
+        checkAdd(item);
+        write(tail, item);
+        tail += item.length + FRAME;
+        size++;
+        publish();
+    }
+
+    /**
+     * Remove and return the item from the first of the deque.
+     *
+     * @return the item removed from the first of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     * @throws IllegalStateException if the record is corrupt, or the deque
+     *                               is closed
+     */
+    public byte[] removeFirst() {
+
+        checkRemove();
+        final byte[] item = read(head);
+        head += item.length + FRAME;
+        size--;
+        publish();
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the last of the deque.
+     *
+     * @return the item removed from the last of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     * @throws IllegalStateException if the record is corrupt, or the deque
+     *                               is closed
+     */
+    public byte[] removeLast() {
+
+        checkRemove();
+        final int length = getInt(tail - 4);
+        if (length < 0 || length > tail - head - FRAME) {
+
+            throw new IllegalStateException("Record is corrupt.");
+        }
+
+        final byte[] item = read(tail - length - FRAME);
+        tail -= length + FRAME;
+        size--;
+        publish();
+        return item;
+    }
+
+    /**
+     * Check that an item can be added.
+     *
+     * @param item the item to be added
+     * @throws IllegalArgumentException if the item is null
+     * @throws IllegalStateException if the record of the item does not fit,
+     *                               or the deque is closed
+     */
+    private void checkAdd(byte[] item) {
+
+        checkOpen();
+        if (item == null) {
+
+            throw new IllegalArgumentException("Item cannot be null.");
+        }
+
+        if (tail - head + item.length + FRAME > capacity) {
+
+            throw new IllegalStateException("Deque is full.");
+        }
+    }
+
+    /**
+     * Check that an item can be removed.
+     *
+     * @throws java.util.NoSuchElementException if the deque is empty
+     * @throws IllegalStateException if the deque is closed
+     */
+    private void checkRemove() {
+
+        checkOpen();
+        if (isEmpty()) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+    }
+
+    /**
+     * Check that the deque has not been closed.
+     *
+     * @throws IllegalStateException if the deque is closed
+     */
+    private void checkOpen() {
+
+        if (closed) {
+
+            throw new IllegalStateException("Deque is closed.");
+        }
+    }
+
+    /**
+     * Write the record of an item.
+     *
+     * @param position the position of the record
+     * @param item     the item
+     */
+    private void write(long position, byte[] item) {
+
+        dirtyFrom = Math.min(dirtyFrom, position);
+        dirtyTo = Math.max(dirtyTo, position + item.length + FRAME);
+
+        crc.reset();
+        crc.update(item);
+        putInt(position, item.length);
+        putInt(position + 4, (int) crc.getValue());
+        putBytes(position + 8, item);
+        putInt(position + 8 + item.length, item.length);
+    }
+
+    /**
+     * Read the item of a record and check it against its checksum.
+     *
+     * @param position the position of the record
+     * @return the item
+     * @throws IllegalStateException if the record is corrupt
+     */
+    private byte[] read(long position) {
+
+        final int length = getInt(position);
+        if (length < 0 || length > tail - position - FRAME
+                || getInt(position + 8 + length) != length) {
+
+            throw new IllegalStateException("Record is corrupt.");
+        }
+
+        final byte[] item = new byte[length];
+        getBytes(position + 8, item);
+
+        crc.reset();
+        crc.update(item);
+        if ((int) crc.getValue() != getInt(position + 4)) {
+
+            throw new IllegalStateException("Record is corrupt.");
+        }
+
+        return item;
+    }
+
+    /**
+     * Return the offset in the file of a position of the ring.
+     *
+     * @param position the position, which may be negative
+     * @return the offset in the file
+     */
+    private int offset(long position) {
+
+        return HEADER + (int) (position & (capacity - 1));
+    }
+
+    /**
+     * Write an int at a position of the ring, wrapping around its end.
+     *
+     * @param position the position of the first byte
+     * @param value    the value to write
+     */
+    private void putInt(long position, int value) {
+
+        final int offset = offset(position);
+        if (offset + 4 <= HEADER + capacity) {
+
+            buffer.putInt(offset, value);
+        }
+        else {
+
+            byte[] bytes = ByteBuffer.allocate(4).putInt(value).array();
+            putBytes(position, bytes);
+        }
+    }
+
+    /**
+     * Read an int at a position of the ring, wrapping around its end.
+     *
+     * @param position the position of the first byte
+     * @return the value read
+     */
+    private int getInt(long position) {
+
+        final int offset = offset(position);
+        if (offset + 4 <= HEADER + capacity) {
+
+            return buffer.getInt(offset);
+        }
+
+        byte[] bytes = new byte[4];
+        getBytes(position, bytes);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    /**
+     * Copy bytes into the ring, wrapping around its end.
+     *
+     * @param position the position of the first byte
+     * @param bytes    the bytes to copy
+     */
+    private void putBytes(long position, byte[] bytes) {
+
+        final int offset = offset(position);
+        final int end = HEADER + capacity;
+        final int firstPart = Math.min(bytes.length, end - offset);
+        buffer.put(offset, bytes, 0, firstPart);
+        buffer.put(HEADER, bytes, firstPart, bytes.length - firstPart);
+    }
+
+    /**
+     * Copy bytes out of the ring, wrapping around its end.
+     *
+     * @param position the position of the first byte
+     * @param bytes    the array to fill
+     */
+    private void getBytes(long position, byte[] bytes) {
+
+        final int offset = offset(position);
+        final int end = HEADER + capacity;
+        final int firstPart = Math.min(bytes.length, end - offset);
+        buffer.get(offset, bytes, 0, firstPart);
+        buffer.get(HEADER, bytes, firstPart, bytes.length - firstPart);
+    }
+
+    /**
+     * Obtain iterator to iterate over items in order from first to last.
+     *
+     * @return an iterator over items in order from first to last
+     */
+    public Iterator<byte[]> iterator() {
+
+        return new DequeIterator();
+    }
+
+    /**
+     * Iterator class to iterate over items of a deque in order from first to
+     * last, reading each record as it goes.
+     */
+    private class DequeIterator implements Iterator<byte[]> {
+
+        private long position = head;
+        private int remaining = size;
+
+        /**
+         * Check if there are more items to return.
+         *
+         * @return true if there are more items to return, false otherwise
+         */
+        public boolean hasNext() {
+
+            return remaining > 0;
+        }
+
+        /**
+         * Return the next item in the deque.
+         *
+         * @return the next item in the deque
+         * @throws java.util.NoSuchElementException if there are no more items
+         * @throws IllegalStateException if the record is corrupt
+         */
+        public byte[] next() {
+
+            if (!hasNext()) {
+
+                throw new java.util.NoSuchElementException(
+                        "No more items to return.");
+            }
+
+            final byte[] item = read(position);
+            position += item.length + FRAME;
+            remaining--;
+            return item;
+        }
+
+        public void remove() {
+
+            throw new UnsupportedOperationException("Operation not supported.");
+        }
+    }
+
+    /**
+     * Test the deque implementation.
+     *
+     * @param args the command-line arguments: the file to use, which is
+     *             deleted first
+     */
+    public static void main(String[] args) throws IOException {
+
+        Path file = Path.of(args[0]);
+        Files.deleteIfExists(file);
+
+        MappedDeque deque = new MappedDeque(file, 1 << 20, 0);
+        deque.addLast("b".getBytes());
+        deque.addLast("c".getBytes());
+        deque.addFirst("a".getBytes());
+        System.out.println("Added \"b\", \"c\" to the last and \"a\" to "
+                                   + "the first");
+        System.out.println("Size: " + deque.size() + ", bytes used: "
+                                   + deque.usedBytes());
+
+        StringBuilder items = new StringBuilder();
+        for (byte[] item : deque) {
+
+            items.append(' ').append(new String(item));
+        }
+        System.out.println("Items in deque (first to last):" + items);
+
+        System.out.println("Removed from first: "
+                                   + new String(deque.removeFirst()));
+        System.out.println("Removed from last: "
+                                   + new String(deque.removeLast()));
+
+        // Test recovery of the state from the file
+        deque.close();
+        deque = new MappedDeque(file, 1 << 20, 0);
+        System.out.println("Reopened, size: " + deque.size() + ", first: "
+                                   + new String(deque.removeFirst()));
+
+        // Test filling the ring, with records wrapping around its end
+        int count = 0;
+        try {
+
+            while (true) {
+
+                deque.addLast(new byte[1000]);
+                count++;
+            }
+        }
+        catch (IllegalStateException e) {
+
+            System.out.println("Filled 1000-byte items until full: " + count
+                                       + " items");
+            System.out.println("Caught exception adding item to the last: "
+                                       + e.getMessage());
+        }
+
+        deque.drainTo(item -> { }, count);
+        deque.close();
+        deque = new MappedDeque(file, 1 << 20, 0);
+        System.out.println("Emptied, reopened, is deque empty? "
+                                   + deque.isEmpty());
+
+        // Test exceptions - remove from first
+        try {
+
+            deque.removeFirst();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while removing from first: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - add null item to first
+        try {
+
+            deque.addFirst(null);
+        }
+        catch (IllegalArgumentException e) {
+
+            System.out.println("Caught exception adding item to the first: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - open the file a second time
+        try {
+
+            new MappedDeque(file, 1 << 20, 0);
+        }
+        catch (IOException e) {
+
+            System.out.println("Caught exception opening the file twice: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - use the deque after closing it
+        deque.close();
+        try {
+
+            deque.addLast(new byte[1]);
+        }
+        catch (IllegalStateException e) {
+
+            System.out.println("Caught exception after closing: "
+                                       + e.getMessage());
+        }
+
+        Files.delete(file);
+    }
+}
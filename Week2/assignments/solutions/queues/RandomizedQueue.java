@@ -1,6 +1,12 @@
 import edu.princeton.cs.algs4.StdRandom;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /******************************************************************************
  *  Compilation:  javac RandomizedQueue.java
@@ -10,7 +16,16 @@ import java.util.Iterator;
  *  removed is chosen uniformly at random from items in the data structure.
  *
  *  This implementation uses a resizing array. The iterator iterates over
- *  items in random order.
+ *  items in random order, which it draws lazily: creating an iterator
+ *  takes constant time and memory, and the memory grows with the items
+ *  returned until a sixteenth of them, after which the rest are shuffled
+ *  at once. Iterators are independent of each other.
+ *
+ *  enqueueAll resizes the array at most once and copies the items in with
+ *  System.arraycopy, and drainTo shrinks it at most once after removing
+ *  the items. The spliterator draws the order like the iterator, and when
+ *  it is split shuffles the remaining indices and splits them in halves,
+ *  so that a parallel stream gets equal shares of the items.
  *
  *  % java RandomizedQueue
  *  ------------------------------
@@ -21,21 +36,24 @@ import java.util.Iterator;
  *  Added item to the queue: 4
  *  Size of queue: 4
  *  Items in queue (random order 1):
- *  4
+ *  3
  *  2
  *  1
- *  3
+ *  4
  *  Items in queue (random order 2):
- *  3
+ *  2
  *  1
  *  4
- *  2
- *  Sample item 1: 3
- *  Sample item 2: 1
+ *  3
+ *  Sample item 1: 4
+ *  Sample item 2: 4
  *  Removed item from queue: 3
- *  Removed item from queue: 1
+ *  Removed item from queue: 2
  *  Size of queue: 2
  *  Is empty: false
+ *  Added 1000 items at once, size of queue: 1002
+ *  Drained 1000 items, sum: 500038
+ *  Sum of items in parallel: 467
  *  Caught exception while adding null item: Item cannot be null.
  *  Caught exception while removing from empty queue: Queue is empty.
  *  Caught exception while sampling from empty queue: Queue is empty.
@@ -158,6 +176,116 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return queue[randomIndex];
     }
 
+    /**
+     * Add the items to the randomized queue. Nothing is added if an item is
+     * null.
+     *
+     * @param items the items to add to the randomized queue
+     * @throws IllegalArgumentException if the array or an item is null
+     */
+    public void enqueueAll(Item[] items) {
+
+        if (items == null) {
+
+            throw new IllegalArgumentException("Items cannot be null.");
+        }
+
+        for (Item item : items) {
+
+            if (item == null) {
+
+                throw new IllegalArgumentException("Item cannot be null.");
+            }
+        }
+
+        // double the underlying array as often as needed, but copy it once
+        int newSize = queue.length;
+        while (newSize < qSize + items.length) {
+
+            newSize *= 2;
+        }
+
+        if (newSize != queue.length) {
+
+            resize(newSize);
+        }
+
+        System.arraycopy(items, 0, queue, qSize, items.length);
+        qSize += items.length;
+    }
+
+    /**
+     * Add the items to the randomized queue, in the order of the
+     * collection's iterator.
+     *
+     * @param items the items to add to the randomized queue
+     * @throws IllegalArgumentException if the collection or an item is null
+     */
+    public void enqueueAll(Collection<? extends Item> items) {
+
+        if (items == null) {
+
+            throw new IllegalArgumentException("Items cannot be null.");
+        }
+
+        enqueueAll((Item[]) items.toArray());
+    }
+
+    /**
+     * Remove up to max random items from the randomized queue and pass them
+     * to the consumer. Each item is removed before the consumer sees it.
+     *
+     * @param consumer the consumer of the removed items
+     * @param max      the largest number of items to remove
+     * @return the number of items removed
+     * @throws IllegalArgumentException if the consumer is null or max is
+     *                                  negative
+     */
+    public int drainTo(Consumer<? super Item> consumer, int max) {
+
+        if (consumer == null) {
+
+            throw new IllegalArgumentException("Consumer cannot be null.");
+        }
+
+        if (max < 0) {
+
+            throw new IllegalArgumentException("Max cannot be negative.");
+        }
+
+        int drained = 0;
+        try {
+
+            while (drained < max && qSize > 0) {
+
+                // move the last item into the slot of the random item
+                int randomIndex = StdRandom.uniformInt(qSize);
+                final Item item = queue[randomIndex];
+                queue[randomIndex] = queue[qSize - 1];
+                queue[--qSize] = null;
+                drained++;
+
+                consumer.accept(item);
+            }
+        }
+        finally {
+
+            // halve the underlying array as often as dequeue would have
+            int newSize = queue.length;
+            while (qSize > 0 && qSize <= newSize / 4) {
+
+                newSize /= 2;
+            }
+
+            if (newSize != queue.length) {
+
+                resize(newSize);
+            }
+        }
+
+        return drained;
+    }
+
     /**
      * Resize the underlying array to the specified new size.
      *
@@ -193,21 +321,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
      */
     private class RandomizedQueueIterator implements Iterator<Item> {
 
-        private int[] indices = new int[qSize];
-        private int count = 0;
-
-        /**
-         * Construct iterator copy array and shuffle in uniform random order.
-         */
-        public RandomizedQueueIterator() {
-
-            for (int i = 0; i < qSize; i++) {
-
-                indices[i] = i;
-            }
-
-            StdRandom.shuffle(indices);
-        }
+        private final RandomOrder order = new RandomOrder(qSize);
 
         /**
          * Check if there are more items to return.
@@ -216,7 +330,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
          */
         public boolean hasNext() {
 
-            return count < qSize;
+            return order.hasNext();
         }
 
         /**
@@ -233,7 +347,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
                         "No more items to return.");
             }
 
-            return queue[indices[count++]];
+            return queue[order.next()];
         }
 
         public void remove() {
@@ -243,6 +357,382 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
     }
 
+    /**
+     * A uniformly random order of the indices 0 to n - 1, drawn one index at
+     * a time by a Fisher-Yates shuffle. The shuffle swaps the index drawn
+     * with the first of the indices not drawn yet; at first only the swapped
+     * positions are kept, in a hash table from position to index, so that
+     * starting costs O(1) and the memory grows with the indices drawn. Once
+     * the table holds n / 16 positions, the indices not drawn yet are copied
+     * to an array of n entries and shuffled there all at once, which costs
+     * O(n) but reads the items faster than drawing them one at a time.
+     */
+    private static class RandomOrder {
+
+        // the number of indices
+        private final int n;
+
+        // the number of indices drawn
+        private int count;
+
+        // the positions swapped and their indices, empty positions are -1
+        private int[] positions;
+        private int[] indices;
+        private int entries;
+
+        // the indices not drawn yet, shuffled, once copied
+        private int[] shuffled;
+
+        /**
+         * Construct a random order of the indices 0 to n - 1.
+         *
+         * @param n the number of indices
+         */
+        RandomOrder(int n) {
+
+            this.n = n;
+        }
+
+        /**
+         * Check if there are more indices to draw.
+         *
+         * @return true if there are more indices, false otherwise
+         */
+        boolean hasNext() {
+
+            return count < n;
+        }
+
+        /**
+         * Return the number of indices drawn.
+         *
+         * @return the number of indices drawn
+         */
+        int drawn() {
+
+            return count;
+        }
+
+        /**
+         * Draw the next index, of those not drawn yet uniformly at random.
+         * The caller checks that there is one.
+         *
+         * @return the next index
+         */
+        int next() {
+
+            if (shuffled == null && entries >= n >>> 4) {
+
+                remaining();
+            }
+
+            if (shuffled != null) {
+
+                return shuffled[count++];
+            }
+
+            int random = count + StdRandom.uniformInt(n - count);
+            int index = get(random);
+            if (random != count) {
+
+                put(random, get(count));
+            }
+            count++;
+            return index;
+        }
+
+        /**
+         * Copy the indices not drawn yet to an array and shuffle them, if not
+         * done already, and stop keeping the hash table.
+         *
+         * @return the array, whose positions from drawn() on hold the
+         *         indices not drawn yet in random order
+         */
+        int[] remaining() {
+
+            if (shuffled != null) {
+
+                return shuffled;
+            }
+
+            shuffled = new int[n];
+            for (int i = count; i < n; i++) {
+
+                shuffled[i] = i;
+            }
+
+            // positions before count were drawn and are not looked at again
+            if (positions != null) {
+
+                for (int i = 0; i < positions.length; i++) {
+
+                    if (positions[i] >= count) {
+
+                        shuffled[positions[i]] = indices[i];
+                    }
+                }
+            }
+
+            positions = null;
+            indices = null;
+            StdRandom.shuffle(shuffled, count, n);
+            return shuffled;
+        }
+
+        /**
+         * Return the slot of a position in the hash table: the slot holding
+         * it, or the empty slot where it belongs.
+         *
+         * @param position the position
+         * @return the slot
+         */
+        private int slot(int position) {
+
+            int mask = positions.length - 1;
+
+            // the top bits of a Fibonacci hash, as many as the table needs
+            int shift = Integer.numberOfLeadingZeros(mask);
+            int i = (position * 0x9e3779b9) >>> shift;
+            while (positions[i] != -1 && positions[i] != position) {
+
+                i = (i + 1) & mask;
+            }
+
+            return i;
+        }
+
+        /**
+         * Return the index at a position, which is the position itself
+         * unless it was swapped.
+         *
+         * @param position the position
+         * @return the index at the position
+         */
+        private int get(int position) {
+
+            if (positions == null) {
+
+                return position;
+            }
+
+            int i = slot(position);
+            return positions[i] == -1 ? position : indices[i];
+        }
+
+        /**
+         * Set the index at a position, doubling the hash table to keep it
+         * at most half full.
+         *
+         * @param position the position
+         * @param index    the index at the position
+         */
+        private void put(int position, int index) {
+
+            if (positions == null) {
+
+                positions = new int[16];
+                indices = new int[16];
+                Arrays.fill(positions, -1);
+            }
+            else if (2 * (entries + 1) > positions.length) {
+
+                int[] oldPositions = positions;
+                int[] oldIndices = indices;
+                positions = new int[2 * oldPositions.length];
+                indices = new int[2 * oldIndices.length];
+                Arrays.fill(positions, -1);
+                for (int i = 0; i < oldPositions.length; i++) {
+
+                    if (oldPositions[i] != -1) {
+
+                        int j = slot(oldPositions[i]);
+                        positions[j] = oldPositions[i];
+                        indices[j] = oldIndices[i];
+                    }
+                }
+            }
+
+            int i = slot(position);
+            if (positions[i] == -1) {
+
+                positions[i] = position;
+                entries++;
+            }
+            indices[i] = index;
+        }
+    }
+
+    /**
+     * Obtain a spliterator over the items in random order, which splits them
+     * in halves. The randomized queue must not be changed while it is in use.
+     * Like the iterator it draws the order lazily, until it is first split.
+     *
+     * @return a SIZED, SUBSIZED and NONNULL spliterator
+     */
+    public Spliterator<Item> spliterator() {
+
+        return new RandomizedQueueSpliterator<Item>(queue, qSize);
+    }
+
+    /**
+     * Return a sequential stream of the items in random order.
+     *
+     * @return a stream of the items
+     */
+    public Stream<Item> stream() {
+
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Return a parallel stream of the items, split by the spliterator.
+     *
+     * @return a parallel stream of the items
+     */
+    public Stream<Item> parallelStream() {
+
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Spliterator class to traverse and split a range of shuffled indices.
+     * The root spliterator draws the indices from a RandomOrder until it is
+     * split, when the rest of the order is copied out to be shared.
+     */
+    private static class RandomizedQueueSpliterator<Item>
+            implements Spliterator<Item> {
+
+        private final Item[] queue;
+        private RandomOrder order;
+        private int[] indices;
+        private int index;
+        private final int end;
+
+        /**
+         * Construct a spliterator over all the items in a random order.
+         *
+         * @param queue the underlying array
+         * @param size  the number of items
+         */
+        RandomizedQueueSpliterator(Item[] queue, int size) {
+
+            this.queue = queue;
+            this.order = new RandomOrder(size);
+            this.end = size;
+        }
+
+        /**
+         * Construct a spliterator over the items at some shuffled indices.
+         *
+         * @param queue   the underlying array
+         * @param indices the shuffled indices of the items
+         * @param index   the first of the shuffled indices covered
+         * @param end     one past the last of the shuffled indices covered
+         */
+        RandomizedQueueSpliterator(Item[] queue, int[] indices, int index,
+                                   int end) {
+
+            this.queue = queue;
+            this.indices = indices;
+            this.index = index;
+            this.end = end;
+        }
+
+        /**
+         * Pass the next item to the action, if there is one.
+         *
+         * @param action the action to perform on the item
+         * @return true if there was an item, false otherwise
+         */
+        public boolean tryAdvance(Consumer<? super Item> action) {
+
+            if (order != null) {
+
+                if (!order.hasNext()) {
+
+                    return false;
+                }
+
+                action.accept(queue[order.next()]);
+                return true;
+            }
+
+            if (index == end) {
+
+                return false;
+            }
+
+            action.accept(queue[indices[index++]]);
+            return true;
+        }
+
+        /**
+         * Pass all the remaining items to the action.
+         *
+         * @param action the action to perform on each item
+         */
+        public void forEachRemaining(Consumer<? super Item> action) {
+
+            if (order != null) {
+
+                while (order.hasNext()) {
+
+                    action.accept(queue[order.next()]);
+                }
+                return;
+            }
+
+            for (int i = index; i < end; i++) {
+
+                action.accept(queue[indices[i]]);
+            }
+            index = end;
+        }
+
+        /**
+         * Split off the first half of the remaining items.
+         *
+         * @return a spliterator over the first half, or null if there are
+         *         fewer than two items
+         */
+        public Spliterator<Item> trySplit() {
+
+            if (order != null) {
+
+                if (end - order.drawn() < 2) {
+
+                    return null;
+                }
+
+                index = order.drawn();
+                indices = order.remaining();
+                order = null;
+            }
+
+            final int middle = (index + end) >>> 1;
+            if (middle == index) {
+
+                return null;
+            }
+
+            final RandomizedQueueSpliterator<Item> prefix =
+                    new RandomizedQueueSpliterator<Item>(queue, indices, index,
+                                                         middle);
+            index = middle;
+            return prefix;
+        }
+
+        public long estimateSize() {
+
+            return order != null ? end - order.drawn() : end - index;
+        }
+
+        public int characteristics() {
+
+            return SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     // unit testing (required)
 
     /**
@@ -295,6 +785,23 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         // test isEmpty() method
         System.out.println("Is empty: " + rq.isEmpty());
 
+        // test enqueueAll(), drainTo() and parallelStream() methods
+        Integer[] batch = new Integer[1000];
+        for (int i = 0; i < batch.length; i++) {
+
+            batch[i] = i + 1;
+        }
+        rq.enqueueAll(batch);
+        System.out.println("Added 1000 items at once, size of queue: "
+                                   + rq.size());
+
+        final long[] sum = new long[1];
+        int drained = rq.drainTo(item -> sum[0] += item, 1000);
+        System.out.println("Drained " + drained + " items, sum: " + sum[0]);
+        System.out.println("Sum of items in parallel: "
+                                   + rq.parallelStream()
+                                       .mapToLong(Integer::longValue).sum());
+
         // test exceptions - enqueue() method
         try {
 
@@ -0,0 +1,660 @@
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/******************************************************************************
+ *  Compilation:  javac ResizingArrayDeque.java
+ *  Execution:    java ResizingArrayDeque
+ *  Dependencies: DequeModel.java
+ *
+ *  <p>A double-ended queue with the same API as Deque, implemented with a
+ *  circular buffer instead of a doubly linked list.
+ *
+ *  The items are stored in an array whose length is a power of two, from
+ *  index head onwards, wrapping around to the start of the array. Indices
+ *  are reduced with a mask instead of a modulo. Adding and removing items
+ *  allocates nothing, unless the array is full, in which case it doubles.
+ *  When the deque is a quarter full, the array halves, so a deque that has
+ *  just been resized must double or halve in size before it is resized
+ *  again, and adds and removes take amortized constant time. Compared with
+ *  Deque, which allocates a 24-byte node per item (with compressed
+ *  pointers), this saves memory and young-generation garbage, and the
+ *  iterator walks memory in order instead of chasing pointers.
+ *
+ *  The bulk adds grow the array at most once, to the power of two that
+ *  holds all of the items, and copy them in with System.arraycopy. The
+ *  spliterator covers a range of positions from the head, which it splits
+ *  at the middle in constant time.</p>
+ *
+ *  % java ResizingArrayDeque
+ *  ------------------------------
+ *  Added item 1 to the first
+ *  Added item 2 to the first
+ *  Added item 3 to the last
+ *  Size: 3
+ *  Items in deque (first to last):
+ *  2
+ *  1
+ *  3
+ *  Removed item from first: 2
+ *  Removed item from last: 3
+ *  Size: 1
+ *  Items in deque (first to last):
+ *  1
+ *  Removed item from first: 1
+ *  Size: 0
+ *  Is deque empty? true
+ *  Added 1000 items to the first, capacity: 1024
+ *  Removed 900 items from the last, capacity: 256
+ *  First and last: 999 900
+ *  Added 1000 items to the first and to the last, capacity: 2048
+ *  Sum of all items in parallel: 999000
+ *  Caught exception while removing from first: Deque is empty.
+ *  Caught exception while removing from last: Deque is empty.
+ *  Caught exception adding item to the first: Item cannot be null.
+ *  Caught exception adding item to the last: Item cannot be null.
+ *  Caught exception while removing item: Operation not supported.
+ *  Caught exception while iterating: No more items to return.
+ *  ------------------------------
+ ******************************************************************************/
+
+public class ResizingArrayDeque<Item> implements DequeModel<Item> {
+
+    // smallest length of the array, a power of two
+    private static final int MIN_CAPACITY = 8;
+
+    // largest power-of-two length of an array
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // circular buffer, of power-of-two length
+    private Item[] items;
+
+    // index of the first item
+    private int head;
+
+    // number of items on the deque
+    private int size;
+
+    /**
+     * Construct an empty deque.
+     */
+    public ResizingArrayDeque() {
+
+        items = (Item[]) new Object[MIN_CAPACITY];
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Check if the deque is empty (contains no elements).
+     *
+     * @return true if the deque is empty, false otherwise
+     */
+    public boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the deque.
+     *
+     * @return the number of items on the deque
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Return the length of the underlying array.
+     *
+     * @return the number of items the deque holds before it grows
+     */
+    public int capacity() {
+
+        return items.length;
+    }
+
+    /**
+     * Add an item to the first of the deque.
+     *
+     * @param item the item to be enqueued to the first of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws IllegalStateException if the deque holds 2^30 items already
+     */
+    public void addFirst(Item item) {
+
+        if (item == null) {
+
+            throw new IllegalArgumentException("Item cannot be null.");
+        }
+
+        if (size == items.length) {
+
+            grow();
+        }
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        size++;
+    }
+
+    /**
+     * Add an item to the last of the deque.
+     *
+     * @param item the item to be enqueued to the last of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws IllegalStateException if the deque holds 2^30 items already
+     */
+    public void addLast(Item item) {
+
+        if (item == null) {
+
+            throw new IllegalArgumentException("Item cannot be null.");
+        }
+
+        if (size == items.length) {
+
+            grow();
+        }
+
+        items[(head + size) & (items.length - 1)] = item;
+        size++;
+    }
+
+    /**
+     * Remove and return the item from the first of the deque.
+     *
+     * @return the item removed from the first of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    public Item removeFirst() {
+
+        if (isEmpty()) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+
+        final Item item = items[head];
+
+        // clear the slot to avoid loitering
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+        size--;
+
+        shrinkIfSparse();
+
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the last of the deque.
+     *
+     * @return the item removed from the last of the deque
+     * @throws java.util.NoSuchElementException if the deque is empty
+     */
+    public Item removeLast() {
+
+        if (isEmpty()) {
+
+            throw new java.util.NoSuchElementException("Deque is empty.");
+        }
+
+        final int last = (head + size - 1) & (items.length - 1);
+        final Item item = items[last];
+
+        // clear the slot to avoid loitering
+        items[last] = null;
+        size--;
+
+        shrinkIfSparse();
+
+        return item;
+    }
+
+    /**
+     * Add the items to the first of the deque, so that they come first in
+     * the order they have in the array. Nothing is added if an item is null.
+     *
+     * @param added the items to be added to the first of the deque
+     * @throws IllegalArgumentException if the array or an item is null
+     * @throws IllegalStateException if the deque would hold more than 2^30
+     *                               items
+     */
+    public void addAllFirst(Item[] added) {
+
+        checkItems(added);
+        ensureCapacity(size + (long) added.length);
+
+        head = (head - added.length) & (items.length - 1);
+        copyIn(added, head);
+        size += added.length;
+    }
+
+    /**
+     * Add the items to the last of the deque, in the order they have in the
+     * array. Nothing is added if an item is null.
+     *
+     * @param added the items to be added to the last of the deque
+     * @throws IllegalArgumentException if the array or an item is null
+     * @throws IllegalStateException if the deque would hold more than 2^30
+     *                               items
+     */
+    public void addAllLast(Item[] added) {
+
+        checkItems(added);
+        ensureCapacity(size + (long) added.length);
+
+        copyIn(added, (head + size) & (items.length - 1));
+        size += added.length;
+    }
+
+    /**
+     * Check that an array of items to add, and every item in it, is not null.
+     *
+     * @param added the items to be added
+     * @throws IllegalArgumentException if the array or an item is null
+     */
+    private static void checkItems(Object[] added) {
+
+        if (added == null) {
+
+            throw new IllegalArgumentException("Items cannot be null.");
+        }
+
+        for (Object item : added) {
+
+            if (item == null) {
+
+                throw new IllegalArgumentException("Item cannot be null.");
+            }
+        }
+    }
+
+    /**
+     * Grow the underlying array once, to the smallest power of two that holds
+     * the given number of items.
+     *
+     * @param needed the number of items the array must hold
+     * @throws IllegalStateException if the array cannot grow that much
+     */
+    private void ensureCapacity(long needed) {
+
+        if (needed > MAX_CAPACITY) {
+
+            throw new IllegalStateException("Deque is full.");
+        }
+
+        int capacity = items.length;
+        while (capacity < needed) {
+
+            capacity *= 2;
+        }
+
+        if (capacity != items.length) {
+
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Copy items into the circular buffer, wrapping around its end.
+     *
+     * @param added the items to copy, which fit in the free slots
+     * @param start the index of the slot for the first item
+     */
+    private void copyIn(Item[] added, int start) {
+
+        int firstPart = Math.min(added.length, items.length - start);
+        System.arraycopy(added, 0, items, start, firstPart);
+        System.arraycopy(added, firstPart, items, 0, added.length - firstPart);
+    }
+
+    /**
+     * Double the length of the underlying array.
+     *
+     * @throws IllegalStateException if the array cannot grow any more
+     */
+    private void grow() {
+
+        if (items.length == MAX_CAPACITY) {
+
+            throw new IllegalStateException("Deque is full.");
+        }
+
+        resize(2 * items.length);
+    }
+
+    /**
+     * Halve the length of the underlying array when it is a quarter full.
+     */
+    private void shrinkIfSparse() {
+
+        if (items.length > MIN_CAPACITY && size == items.length / 4) {
+
+            resize(items.length / 2);
+        }
+    }
+
+    /**
+     * Move the items to an array of the given length, starting at index 0.
+     *
+     * @param capacity the new length of the underlying array, a power of two
+     */
+    private void resize(int capacity) {
+
+        Item[] copy = (Item[]) new Object[capacity];
+
+        // the items run from head to the end of the array, then wrap around
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, copy, 0, firstPart);
+        System.arraycopy(items, 0, copy, firstPart, size - firstPart);
+
+        items = copy;
+        head = 0;
+    }
+
+    /**
+     * Obtain iterator to iterate over items in order from first to last.
+     *
+     * @return an iterator over items in order from first to last
+     */
+    public Iterator<Item> iterator() {
+
+        return new DequeIterator();
+    }
+
+    /**
+     * Iterator class to iterate over items of a deque in order from first to
+     * last.
+     */
+    private class DequeIterator implements Iterator<Item> {
+
+        // the iterator reads local copies of the fields, which the JIT can
+        // keep in registers
+        private final Item[] array = items;
+        private final int first = head;
+        private final int count = size;
+        private int index = 0;
+
+        /**
+         * Check if there are more items to return.
+         *
+         * @return true if there are more items to return, false otherwise
+         */
+        public boolean hasNext() {
+
+            return index < count;
+        }
+
+        /**
+         * Return the next item in the deque.
+         *
+         * @return the next item in the deque
+         * @throws java.util.NoSuchElementException if there are no more items
+         */
+        public Item next() {
+
+            if (!hasNext()) {
+
+                throw new java.util.NoSuchElementException(
+                        "No more items to return.");
+            }
+
+            return array[(first + index++) & (array.length - 1)];
+        }
+
+        public void remove() {
+
+            throw new UnsupportedOperationException("Operation not supported.");
+        }
+    }
+
+    /**
+     * Obtain a spliterator over the items in order from first to last, which
+     * splits them in halves. The deque must not be changed while it is in
+     * use.
+     *
+     * @return an ORDERED, SIZED, SUBSIZED and NONNULL spliterator
+     */
+    public Spliterator<Item> spliterator() {
+
+        return new DequeSpliterator<>(items, head, 0, size);
+    }
+
+    /**
+     * Spliterator class to traverse and split a range of positions counted
+     * from the first item.
+     */
+    private static class DequeSpliterator<Item> implements Spliterator<Item> {
+
+        private final Item[] array;
+        private final int first;
+        private int index;
+        private final int end;
+
+        /**
+         * Construct a spliterator over the positions from index to end.
+         *
+         * @param array the circular buffer
+         * @param first the index in the array of the first item of the deque
+         * @param index the first position covered
+         * @param end one past the last position covered
+         */
+        DequeSpliterator(Item[] array, int first, int index, int end) {
+
+            this.array = array;
+            this.first = first;
+            this.index = index;
+            this.end = end;
+        }
+
+        /**
+         * Pass the next item to the action, if there is one.
+         *
+         * @param action the action to perform on the item
+         * @return true if there was an item, false otherwise
+         */
+        public boolean tryAdvance(Consumer<? super Item> action) {
+
+            if (index == end) {
+
+                return false;
+            }
+
+            action.accept(array[(first + index++) & (array.length - 1)]);
+            return true;
+        }
+
+        /**
+         * Pass all the remaining items to the action, in order.
+         *
+         * @param action the action to perform on each item
+         */
+        public void forEachRemaining(Consumer<? super Item> action) {
+
+            final int mask = array.length - 1;
+            for (int i = index; i < end; i++) {
+
+                action.accept(array[(first + i) & mask]);
+            }
+            index = end;
+        }
+
+        /**
+         * Split off the first half of the remaining items.
+         *
+         * @return a spliterator over the first half, or null if there are
+         *         fewer than two items
+         */
+        public Spliterator<Item> trySplit() {
+
+            final int middle = (index + end) >>> 1;
+            if (middle == index) {
+
+                return null;
+            }
+
+            final DequeSpliterator<Item> prefix =
+                    new DequeSpliterator<Item>(array, first, index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        public long estimateSize() {
+
+            return end - index;
+        }
+
+        public int characteristics() {
+
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * Test the deque implementation.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+
+        ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<Integer>();
+        deque.addFirst(1);
+        System.out.println("Added item 1 to the first");
+        deque.addFirst(2);
+        System.out.println("Added item 2 to the first");
+        deque.addLast(3);
+        System.out.println("Added item 3 to the last");
+        System.out.println("Size: " + deque.size());
+
+        System.out.println("Items in deque (first to last):");
+        for (int item : deque) {
+
+            System.out.println(item);
+        }
+
+        System.out.println("Removed item from first: " + deque.removeFirst());
+        System.out.println("Removed item from last: " + deque.removeLast());
+        System.out.println("Size: " + deque.size());
+
+        System.out.println("Items in deque (first to last):");
+        for (int item : deque) {
+
+            System.out.println(item);
+        }
+
+        System.out.println("Removed item from first: " + deque.removeFirst());
+        System.out.println("Size: " + deque.size());
+        System.out.println("Is deque empty? " + deque.isEmpty());
+
+        // Test growing and shrinking across the wrap-around point
+        for (int i = 0; i < 1000; i++) {
+
+            deque.addFirst(i);
+        }
+        System.out.println("Added 1000 items to the first, capacity: "
+                                   + deque.capacity());
+
+        for (int i = 0; i < 900; i++) {
+
+            deque.removeLast();
+        }
+        System.out.println("Removed 900 items from the last, capacity: "
+                                   + deque.capacity());
+        System.out.println("First and last: " + deque.removeFirst() + " "
+                                   + deque.removeLast());
+
+        while (!deque.isEmpty()) {
+
+            deque.removeFirst();
+        }
+
+        // Test bulk adds and a parallel stream
+        Integer[] batch = new Integer[1000];
+        for (int i = 0; i < batch.length; i++) {
+
+            batch[i] = i;
+        }
+        deque.addAllFirst(batch);
+        deque.addAllLast(batch);
+        System.out.println("Added 1000 items to the first and to the last, "
+                                   + "capacity: " + deque.capacity());
+        System.out.println("Sum of all items in parallel: "
+                                   + deque.parallelStream()
+                                          .mapToLong(Integer::longValue).sum());
+
+        while (!deque.isEmpty()) {
+
+            deque.removeFirst();
+        }
+
+        // Test exceptions - remove from first
+        try {
+
+            deque.removeFirst();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while removing from first: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - remove from last
+        try {
+
+            deque.removeLast();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while removing from last: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - add null item to first
+        try {
+
+            deque.addFirst(null);
+        }
+        catch (IllegalArgumentException e) {
+
+            System.out.println("Caught exception adding item to the first: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - add null item to last
+        try {
+
+            deque.addLast(null);
+        }
+        catch (IllegalArgumentException e) {
+
+            System.out.println("Caught exception adding item to the last: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - remove from empty deque using iterator
+        try {
+
+            Iterator<Integer> it = deque.iterator();
+            it.remove();
+        }
+        catch (UnsupportedOperationException e) {
+
+            System.out.println("Caught exception while removing item: "
+                                       + e.getMessage());
+        }
+
+        // Test exceptions - iterate over empty deque
+        try {
+
+            Iterator<Integer> it = deque.iterator();
+            it.next();
+        }
+        catch (java.util.NoSuchElementException e) {
+
+            System.out.println("Caught exception while iterating: "
+                                       + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,298 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/******************************************************************************
+ *  Compilation:  javac WorkStealingBenchmark.java
+ *  Execution:    java WorkStealingBenchmark items thieves
+ *                                           [chase-lev|concurrent|locked ...]
+ *  Dependencies: WorkStealingDeque.java
+ *
+ *  Times WorkStealingDeque (chase-lev) as the task deque of one worker
+ *  against a ConcurrentLinkedDeque (concurrent) and a java.util.ArrayDeque
+ *  guarded by a lock (locked), in two rounds:
+ *
+ *    - owner: the owner alone pushes bursts of 64 items and pops them all,
+ *      the uncontended fast path of a worker running its own tasks
+ *    - stealing: the owner pushes items in random bursts and pops about a
+ *      quarter of them, while thieves threads steal until all items are
+ *      taken, the way idle workers take load from a busy one
+ *
+ *  Throughput is in millions of items per second, best of three runs after
+ *  one warm-up run. Time one deque per JVM: with several, the calls through
+ *  the adapter see several classes and the JIT compiles them less well for
+ *  the later ones. The stealing round only means something when the owner
+ *  and the thieves run on different cores.
+ *
+ *  % java WorkStealingBenchmark 10000000 3 chase-lev
+ *  deque        owner (M/s)  stealing (M/s)   stolen
+ *  chase-lev          63.50           27.16    76.2%
+ *  % java WorkStealingBenchmark 10000000 3 concurrent
+ *  concurrent         17.10            7.15    76.2%
+ *  % java WorkStealingBenchmark 10000000 3 locked
+ *  locked             17.68           12.51    76.2%
+ *
+ *  These runs are on one core, where the thieves only run when the owner
+ *  is preempted, so the owner's pops never find the deque empty and the
+ *  stolen fraction is the same for every deque.
+ *
+ ******************************************************************************/
+
+public class WorkStealingBenchmark {
+
+    private static final List<String> NAMES = List.of("chase-lev", "concurrent", "locked");
+
+    private static final List<Supplier<TaskDeque>> DEQUES = List.of(
+            ChaseLev::new, Concurrent::new, Locked::new);
+
+    private static final int BURST = 64;
+
+    private static final int ROUNDS = 3;
+
+    private static final Integer[] ITEMS = new Integer[1024];
+
+    static {
+
+        for (int i = 0; i < ITEMS.length; i++) {
+
+            ITEMS[i] = i;
+        }
+    }
+
+    /**
+     * The operations of a worker's task deque.
+     */
+    private interface TaskDeque {
+
+        void push(Integer item);
+
+        Integer pop();
+
+        Integer steal();
+    }
+
+    /**
+     * WorkStealingDeque, lock-free.
+     */
+    private static class ChaseLev implements TaskDeque {
+
+        private final WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+
+        public void push(Integer item) {
+
+            deque.addLast(item);
+        }
+
+        public Integer pop() {
+
+            return deque.removeLast();
+        }
+
+        public Integer steal() {
+
+            return deque.stealFirst();
+        }
+    }
+
+    /**
+     * ConcurrentLinkedDeque, lock-free, one node per item.
+     */
+    private static class Concurrent implements TaskDeque {
+
+        private final ConcurrentLinkedDeque<Integer> deque = new ConcurrentLinkedDeque<>();
+
+        public void push(Integer item) {
+
+            deque.addLast(item);
+        }
+
+        public Integer pop() {
+
+            return deque.pollLast();
+        }
+
+        public Integer steal() {
+
+            return deque.pollFirst();
+        }
+    }
+
+    /**
+     * ArrayDeque with every operation under one lock.
+     */
+    private static class Locked implements TaskDeque {
+
+        private final ArrayDeque<Integer> deque = new ArrayDeque<>();
+
+        public synchronized void push(Integer item) {
+
+            deque.addLast(item);
+        }
+
+        public synchronized Integer pop() {
+
+            return deque.pollLast();
+        }
+
+        public synchronized Integer steal() {
+
+            return deque.pollFirst();
+        }
+    }
+
+    /**
+     * Time the owner pushing and popping bursts of items alone.
+     *
+     * @param deque the deque to use
+     * @param items the number of items to push and pop
+     * @return the items per second
+     */
+    private static double owner(TaskDeque deque, int items) {
+
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int done = 0; done < items; done += BURST) {
+
+            for (int i = 0; i < BURST; i++) {
+
+                deque.push(ITEMS[(done + i) & (ITEMS.length - 1)]);
+            }
+
+            for (int i = 0; i < BURST; i++) {
+
+                checksum += deque.pop();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // use the result, so the loops cannot be optimized away
+        if (checksum < 0) {
+
+            System.out.println(checksum);
+        }
+
+        return items / (elapsed / 1e9);
+    }
+
+    /**
+     * Time the owner pushing and popping items while thieves steal them.
+     *
+     * @param deque   the deque to use
+     * @param items   the number of items to push
+     * @param thieves the number of thief threads
+     * @return the items per second, and the fraction of items stolen
+     */
+    private static double[] stealing(TaskDeque deque, int items, int thieves)
+            throws InterruptedException {
+
+        AtomicBoolean done = new AtomicBoolean();
+        LongAdder stolen = new LongAdder();
+        Thread[] threads = new Thread[thieves];
+        for (int i = 0; i < thieves; i++) {
+
+            threads[i] = new Thread(() -> {
+
+                long count = 0;
+                while (true) {
+
+                    if (deque.steal() != null) {
+
+                        count++;
+                    }
+                    else if (done.get()) {
+
+                        // the owner has stopped: take what is left
+                        while (deque.steal() != null) {
+
+                            count++;
+                        }
+                        break;
+                    }
+                    else {
+
+                        Thread.onSpinWait();
+                    }
+                }
+                stolen.add(count);
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+
+            thread.start();
+        }
+
+        // the owner pushes in random bursts and pops about a quarter
+        int seed = 42;
+        int next = 0;
+        while (next < items) {
+
+            seed = seed * 1103515245 + 12345;
+            int burst = Math.min(items - next, 1 + ((seed >>> 16) & (BURST - 1)));
+            for (int i = 0; i < burst; i++) {
+
+                deque.push(ITEMS[next++ & (ITEMS.length - 1)]);
+            }
+
+            for (int i = 0; i < burst / 4; i++) {
+
+                deque.pop();
+            }
+        }
+        done.set(true);
+
+        for (Thread thread : threads) {
+
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return new double[] { items / (elapsed / 1e9), stolen.sum() / (double) items };
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args the command-line arguments: items, thieves and deque names
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int items = Integer.parseInt(args[0]);
+        int thieves = Integer.parseInt(args[1]);
+        List<String> names = new ArrayList<>(NAMES);
+        if (args.length > 2) {
+
+            names = List.of(args).subList(2, args.length);
+        }
+
+        System.out.println("deque        owner (M/s)  stealing (M/s)   stolen");
+        for (String name : names) {
+
+            Supplier<TaskDeque> factory = DEQUES.get(NAMES.indexOf(name));
+
+            // warm up the JIT
+            owner(factory.get(), items);
+            stealing(factory.get(), items, thieves);
+
+            double bestOwner = 0;
+            double[] bestStealing = { 0, 0 };
+            for (int r = 0; r < ROUNDS; r++) {
+
+                bestOwner = Math.max(bestOwner, owner(factory.get(), items));
+                double[] result = stealing(factory.get(), items, thieves);
+                if (result[0] > bestStealing[0]) {
+
+                    bestStealing = result;
+                }
+            }
+
+            System.out.printf("%-12s %11.2f %15.2f %7.1f%%%n", name, bestOwner / 1e6,
+                              bestStealing[0] / 1e6, 100 * bestStealing[1]);
+        }
+    }
+}
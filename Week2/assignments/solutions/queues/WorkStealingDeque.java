@@ -0,0 +1,329 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/******************************************************************************
+ *  Compilation:  javac WorkStealingDeque.java
+ *  Execution:    java WorkStealingDeque
+ *
+ *  <p>A lock-free work-stealing deque after Chase and Lev, for the per-worker
+ *  task deques of a scheduler. One owner thread adds and removes items at
+ *  the last of the deque, like a stack, and any other thread steals items
+ *  from the first, the oldest ones.
+ *
+ *  The items are stored in a growable circular array of power-of-two length,
+ *  indexed by two counters that never wrap: top, the index of the first
+ *  item, which only ever increases, and bottom, one past the last item,
+ *  which only the owner writes. The owner pushes without any atomic
+ *  instruction, publishing the item with a release store of bottom. Thieves
+ *  claim the first item by a compare-and-set of top. When the owner removes
+ *  the last item, it races for it with the thieves by the same
+ *  compare-and-set. The memory orderings follow Le, Pop, Cohen and Zappa
+ *  Nardelli, "Correct and Efficient Work-Stealing for Weak Memory Models"
+ *  (PPoPP 2013), with VarHandle access modes in place of C11 atomics.
+ *
+ *  The array doubles when it is full; old arrays are left to thieves that
+ *  may still read them and reclaimed by the garbage collector. The array
+ *  never shrinks. Items removed by the owner are cleared from the array;
+ *  items stolen stay in it until the owner overwrites them, since a thief
+ *  clearing its slot could erase an item the owner has just pushed there.
+ *
+ *  Unlike Deque, removeLast and stealFirst return null when the deque is
+ *  empty instead of throwing, as a scheduler polls its deques constantly.
+ *  WorkStealingDequeStress checks the deque under races, and
+ *  WorkStealingBenchmark times it against ConcurrentLinkedDeque and a locked
+ *  java.util.ArrayDeque.</p>
+ *
+ *  % java WorkStealingDeque
+ *  ------------------------------
+ *  Added items 1 to 100 to the last
+ *  Stolen from first: 1
+ *  Stolen from first: 2
+ *  Removed from last: 100
+ *  Size: 97
+ *  4 thieves stole 49 items, the owner removed 48
+ *  Removed from empty deque: null
+ *  Stolen from empty deque: null
+ *  Caught exception adding item to the last: Item cannot be null.
+ *  ------------------------------
+ ******************************************************************************/
+
+public class WorkStealingDeque<Item> {
+
+    // smallest length of the array, a power of two
+    private static final int MIN_CAPACITY = 16;
+
+    // largest power-of-two length of an array
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private static final VarHandle TOP;
+    private static final VarHandle BOTTOM;
+    private static final VarHandle ARRAY;
+    private static final VarHandle SLOT =
+            MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+
+        try {
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TOP = lookup.findVarHandle(WorkStealingDeque.class, "top", long.class);
+            BOTTOM = lookup.findVarHandle(WorkStealingDeque.class, "bottom", long.class);
+            ARRAY = lookup.findVarHandle(WorkStealingDeque.class, "array",
+                                         Object[].class);
+        }
+        catch (ReflectiveOperationException e) {
+
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // index of the first item, increased by compare-and-set only
+    private long top;
+
+    // one past the index of the last item, written by the owner only
+    private long bottom;
+
+    // circular buffer, of power-of-two length, replaced by the owner only
+    private Object[] array;
+
+    /**
+     * Construct an empty deque.
+     */
+    public WorkStealingDeque() {
+
+        array = new Object[MIN_CAPACITY];
+        top = 0;
+        bottom = 0;
+    }
+
+    /**
+     * Check if the deque is empty. The answer may be out of date as soon as
+     * it is returned if other threads use the deque.
+     *
+     * @return true if the deque was empty, false otherwise
+     */
+    public boolean isEmpty() {
+
+        return size() == 0;
+    }
+
+    /**
+     * Return an estimate of the number of items on the deque, exact if no
+     * other thread uses it.
+     *
+     * @return the number of items on the deque
+     */
+    public int size() {
+
+        long b = (long) BOTTOM.getAcquire(this);
+        long t = (long) TOP.getAcquire(this);
+        return (int) Math.max(0, b - t);
+    }
+
+    /**
+     * Add an item to the last of the deque. Called by the owner thread only.
+     *
+     * @param item the item to be added to the last of the deque
+     * @throws IllegalArgumentException if the item is null
+     * @throws IllegalStateException if the deque holds 2^30 items already
+     */
+    public void addLast(Item item) {
+
+        if (item == null) {
+
+            throw new IllegalArgumentException("Item cannot be null.");
+        }
+
+        final long b = bottom;
+        final long t = (long) TOP.getAcquire(this);
+        Object[] a = array;
+        if (b - t > a.length - 1) {
+
+            a = grow(a, t, b);
+        }
+
+        a[(int) b & (a.length - 1)] = item;
+
+        // publish the item to the thieves
+        BOTTOM.setRelease(this, b + 1);
+    }
+
+    /**
+     * Remove and return the item from the last of the deque. Called by the
+     * owner thread only.
+     *
+     * @return the item removed from the last of the deque, or null if the
+     *         deque is empty or a thief stole its only item first
+     */
+    public Item removeLast() {
+
+        final long b = bottom - 1;
+        final Object[] a = array;
+        BOTTOM.setOpaque(this, b);
+
+        // the decrement of bottom must be visible to the thieves before top
+        // is read, or a thief and the owner could both take the last item
+        VarHandle.fullFence();
+        final long t = (long) TOP.getOpaque(this);
+
+        if (t > b) {
+
+            // empty: restore bottom
+            BOTTOM.setOpaque(this, b + 1);
+            return null;
+        }
+
+        final int slot = (int) b & (a.length - 1);
+        Object item = a[slot];
+        if (t == b) {
+
+            // the only item left: race the thieves for it
+            if (!TOP.compareAndSet(this, t, t + 1)) {
+
+                item = null;
+            }
+            BOTTOM.setOpaque(this, b + 1);
+        }
+
+        if (item != null) {
+
+            // no thief can take this slot any more
+            a[slot] = null;
+        }
+
+        return (Item) item;
+    }
+
+    /**
+     * Remove and return the item from the first of the deque. May be called
+     * by any thread; retries while it loses races with other threads for an
+     * item.
+     *
+     * @return the item removed from the first of the deque, or null if the
+     *         deque is empty
+     */
+    public Item stealFirst() {
+
+        while (true) {
+
+            final long t = (long) TOP.getAcquire(this);
+
+            // top must be read before bottom, as removeLast writes bottom
+            // before it reads top
+            VarHandle.fullFence();
+            final long b = (long) BOTTOM.getAcquire(this);
+            if (t >= b) {
+
+                return null;
+            }
+
+            final Object[] a = (Object[]) ARRAY.getAcquire(this);
+            final Object item = SLOT.getOpaque(a, (int) t & (a.length - 1));
+            if (TOP.compareAndSet(this, t, t + 1)) {
+
+                return (Item) item;
+            }
+        }
+    }
+
+    /**
+     * Copy the items in [t, b) to an array of twice the length and publish
+     * it to the thieves.
+     *
+     * @param a the current array
+     * @param t the index of the first item
+     * @param b one past the index of the last item
+     * @return the new array
+     * @throws IllegalStateException if the array cannot grow any more
+     */
+    private Object[] grow(Object[] a, long t, long b) {
+
+        if (a.length == MAX_CAPACITY) {
+
+            throw new IllegalStateException("Deque is full.");
+        }
+
+        final Object[] copy = new Object[2 * a.length];
+        for (long i = t; i < b; i++) {
+
+            copy[(int) i & (copy.length - 1)] = a[(int) i & (a.length - 1)];
+        }
+
+        ARRAY.setRelease(this, copy);
+        return copy;
+    }
+
+    /**
+     * Test the deque implementation.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        for (int i = 1; i <= 100; i++) {
+
+            deque.addLast(i);
+        }
+        System.out.println("Added items 1 to 100 to the last");
+        System.out.println("Stolen from first: " + deque.stealFirst());
+        System.out.println("Stolen from first: " + deque.stealFirst());
+        System.out.println("Removed from last: " + deque.removeLast());
+        System.out.println("Size: " + deque.size());
+
+        // Test several thieves draining the deque at the same time
+        final int thieves = 4;
+        final int[] stolen = new int[1];
+        Thread[] threads = new Thread[thieves];
+        for (int i = 0; i < thieves; i++) {
+
+            threads[i] = new Thread(() -> {
+
+                int count = 0;
+                while (deque.stealFirst() != null) {
+
+                    count++;
+                }
+
+                synchronized (stolen) {
+
+                    stolen[0] += count;
+                }
+            });
+        }
+
+        // let the owner remove half of the items before the thieves start
+        int removed = 0;
+        while (removed < 48) {
+
+            deque.removeLast();
+            removed++;
+        }
+
+        for (Thread thread : threads) {
+
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+
+            thread.join();
+        }
+        System.out.println(thieves + " thieves stole " + stolen[0]
+                                   + " items, the owner removed " + removed);
+
+        System.out.println("Removed from empty deque: " + deque.removeLast());
+        System.out.println("Stolen from empty deque: " + deque.stealFirst());
+
+        // Test exceptions - add null item to last
+        try {
+
+            deque.addLast(null);
+        }
+        catch (IllegalArgumentException e) {
+
+            System.out.println("Caught exception adding item to the last: "
+                                       + e.getMessage());
+        }
+    }
+}
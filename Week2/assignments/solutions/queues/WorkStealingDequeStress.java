@@ -0,0 +1,354 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/******************************************************************************
+ *  Compilation:  javac WorkStealingDequeStress.java
+ *  Execution:    java WorkStealingDequeStress [batches [thieves [items]]]
+ *  Dependencies: WorkStealingDeque.java
+ *
+ *  Stress tests WorkStealingDeque in the style of jcstress. Each race runs
+ *  two actor threads over the same batch of fresh deques, so that the
+ *  actors hit the same deque at about the same moment, and then an arbiter
+ *  reads what is left. The outcomes of all batches are counted and each one
+ *  is checked against the outcomes the race may legally have:
+ *
+ *    - the owner's removeLast and a thief's stealFirst race for one item
+ *    - two thieves race for one item
+ *    - a thief steals while the owner pushes onto an empty deque
+ *    - the owner removes twice and a thief steals once from two items
+ *    - a thief steals twice while the owner pushes past the capacity and
+ *      grows the array
+ *
+ *  Then the owner pushes items numbered 0, 1, 2, ... and removes some of
+ *  them while thieves steal until all items are gone, and every item must
+ *  have been taken exactly once, and every thief must have stolen items in
+ *  increasing order, as items are stolen oldest first.
+ *
+ *  Races are only found when the actors run on different cores at once, so
+ *  the run is most useful on a multi-core machine. The exit status is 1 if
+ *  a forbidden outcome was seen.
+ *
+ *  % java WorkStealingDequeStress
+ *  race                                  outcome                   count  expect
+ *  removeLast vs stealFirst, 1 item      1 null null null           4205  ACCEPTABLE
+ *  removeLast vs stealFirst, 1 item      null 1 null null         995795  ACCEPTABLE
+ *  stealFirst vs stealFirst, 1 item      1 null null null           8117  ACCEPTABLE
+ *  stealFirst vs stealFirst, 1 item      null 1 null null         991883  ACCEPTABLE
+ *  addLast vs stealFirst, empty          null null 1 null        1000000  ACCEPTABLE
+ *  2 removeLast vs stealFirst, 2 items   2 1 null null           1000000  ACCEPTABLE
+ *  grow vs 2 stealFirst                  1 2 complete null       1000000  ACCEPTABLE
+ *  exactly once                          2000000 items, 4 thieves        OK
+ *
+ ******************************************************************************/
+
+public class WorkStealingDequeStress {
+
+    // deques per batch, run through by both actors
+    private static final int BATCH = 10_000;
+
+    // items in the deque before the grow race, one less than its capacity
+    private static final int BEFORE_GROW = 15;
+
+    private static boolean failed = false;
+
+    /**
+     * A deque and the results of the actors and the arbiter on it.
+     */
+    private static class State {
+
+        final WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        Object r1;
+        Object r2;
+        Object r3;
+        Object r4;
+
+        /**
+         * Return the outcome of the race on this deque.
+         *
+         * @return the four results, separated by spaces
+         */
+        String outcome() {
+
+            return r1 + " " + r2 + " " + r3 + " " + r4;
+        }
+    }
+
+    /**
+     * Run a race over batches of fresh deques, and print and check the
+     * histogram of its outcomes.
+     *
+     * @param name       the name of the race
+     * @param batches    the number of batches of BATCH deques
+     * @param setup      prepares a fresh deque before the race
+     * @param owner      the actions of the first actor, the owner if it
+     *                   uses the owner methods
+     * @param thief      the actions of the second actor
+     * @param arbiter    reads what is left after both actors are done
+     * @param acceptable the outcomes the race may have
+     */
+    private static void race(String name, int batches, Consumer<State> setup,
+                             Consumer<State> owner, Consumer<State> thief,
+                             Consumer<State> arbiter, Set<String> acceptable)
+            throws InterruptedException {
+
+        Map<String, Long> outcomes = new TreeMap<>();
+        for (int batch = 0; batch < batches; batch++) {
+
+            State[] states = new State[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+
+                states[i] = new State();
+                setup.accept(states[i]);
+            }
+
+            // both actors spin until the other one has started too
+            AtomicBoolean go = new AtomicBoolean();
+            Thread first = new Thread(() -> {
+
+                while (!go.get()) {
+
+                    Thread.onSpinWait();
+                }
+
+                for (State state : states) {
+
+                    owner.accept(state);
+                }
+            });
+            Thread second = new Thread(() -> {
+
+                go.set(true);
+                for (State state : states) {
+
+                    thief.accept(state);
+                }
+            });
+
+            first.start();
+            second.start();
+            first.join();
+            second.join();
+
+            for (State state : states) {
+
+                arbiter.accept(state);
+                outcomes.merge(state.outcome(), 1L, Long::sum);
+            }
+        }
+
+        for (Map.Entry<String, Long> outcome : outcomes.entrySet()) {
+
+            boolean isAcceptable = acceptable.contains(outcome.getKey());
+            failed |= !isAcceptable;
+            System.out.printf("%-37s %-20s %10d  %s%n", name, outcome.getKey(),
+                              outcome.getValue(),
+                              isAcceptable ? "ACCEPTABLE" : "FORBIDDEN");
+        }
+    }
+
+    /**
+     * Have the owner push and remove numbered items while thieves steal
+     * them, and check that every item is taken exactly once and that every
+     * thief stole in increasing order.
+     *
+     * @param thieves the number of thief threads
+     * @param items   the number of items the owner pushes
+     */
+    private static void exactlyOnce(int thieves, int items)
+            throws InterruptedException {
+
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        int[] taken = new int[items];
+        AtomicBoolean done = new AtomicBoolean();
+        boolean[] inOrder = new boolean[thieves];
+        int[][] stolenBy = new int[thieves][];
+
+        Thread[] threads = new Thread[thieves];
+        for (int i = 0; i < thieves; i++) {
+
+            final int thief = i;
+            threads[i] = new Thread(() -> {
+
+                int[] stolen = new int[1024];
+                int count = 0;
+                int last = -1;
+                boolean ordered = true;
+                while (true) {
+
+                    Integer item = deque.stealFirst();
+                    if (item == null) {
+
+                        if (done.get() && deque.isEmpty()) {
+
+                            break;
+                        }
+                        Thread.onSpinWait();
+                        continue;
+                    }
+
+                    ordered &= item > last;
+                    last = item;
+                    if (count == stolen.length) {
+
+                        stolen = Arrays.copyOf(stolen, 2 * count);
+                    }
+                    stolen[count++] = item;
+                }
+                inOrder[thief] = ordered;
+                stolenBy[thief] = Arrays.copyOf(stolen, count);
+            });
+            threads[i].start();
+        }
+
+        // the owner pushes in bursts and removes about a quarter of the items
+        SplittableRandom random = new SplittableRandom(42);
+        int next = 0;
+        while (next < items) {
+
+            int burst = Math.min(items - next, 1 + random.nextInt(64));
+            for (int i = 0; i < burst; i++) {
+
+                deque.addLast(next++);
+            }
+
+            int removes = random.nextInt(burst + 1) / 2;
+            for (int i = 0; i < removes; i++) {
+
+                Integer item = deque.removeLast();
+                if (item != null) {
+
+                    taken[item]++;
+                }
+            }
+        }
+        done.set(true);
+
+        for (Thread thread : threads) {
+
+            thread.join();
+        }
+
+        boolean ordered = true;
+        for (int i = 0; i < thieves; i++) {
+
+            ordered &= inOrder[i];
+            for (int item : stolenBy[i]) {
+
+                taken[item]++;
+            }
+        }
+
+        int wrong = 0;
+        for (int count : taken) {
+
+            if (count != 1) {
+
+                wrong++;
+            }
+        }
+
+        boolean ok = wrong == 0 && ordered;
+        failed |= !ok;
+        System.out.printf("%-37s %-31s %s%n", "exactly once",
+                          items + " items, " + thieves + " thieves",
+                          ok ? "OK" : wrong + " items lost or duplicated"
+                                  + (ordered ? "" : ", out of order steals"));
+    }
+
+    /**
+     * Run the stress tests.
+     *
+     * @param args the command-line arguments: batches, thieves and items
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int batches = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int thieves = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int items = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+
+        System.out.printf("%-37s %-20s %10s  %s%n", "race", "outcome", "count",
+                          "expect");
+
+        race("removeLast vs stealFirst, 1 item", batches,
+             s -> s.deque.addLast(1),
+             s -> s.r1 = s.deque.removeLast(),
+             s -> s.r2 = s.deque.stealFirst(),
+             s -> s.r3 = s.deque.stealFirst(),
+             Set.of("1 null null null", "null 1 null null"));
+
+        race("stealFirst vs stealFirst, 1 item", batches,
+             s -> s.deque.addLast(1),
+             s -> s.r1 = s.deque.stealFirst(),
+             s -> s.r2 = s.deque.stealFirst(),
+             s -> s.r3 = s.deque.removeLast(),
+             Set.of("1 null null null", "null 1 null null"));
+
+        race("addLast vs stealFirst, empty", batches,
+             s -> { },
+             s -> s.deque.addLast(1),
+             s -> s.r2 = s.deque.stealFirst(),
+             s -> s.r3 = s.deque.removeLast(),
+             Set.of("null null 1 null", "null 1 null null"));
+
+        race("2 removeLast vs stealFirst, 2 items", batches,
+             s -> {
+
+                 s.deque.addLast(1);
+                 s.deque.addLast(2);
+             },
+             s -> {
+
+                 s.r1 = s.deque.removeLast();
+                 s.r3 = s.deque.removeLast();
+             },
+             s -> s.r2 = s.deque.stealFirst(),
+             s -> s.r4 = s.deque.stealFirst(),
+             Set.of("2 null 1 null", "2 1 null null"));
+
+        race("grow vs 2 stealFirst", batches,
+             s -> {
+
+                 for (int i = 1; i <= BEFORE_GROW; i++) {
+
+                     s.deque.addLast(i);
+                 }
+             },
+             s -> {
+
+                 for (int i = BEFORE_GROW + 1; i <= BEFORE_GROW + 3; i++) {
+
+                     s.deque.addLast(i);
+                 }
+             },
+             s -> {
+
+                 s.r1 = s.deque.stealFirst();
+                 s.r2 = s.deque.stealFirst();
+             },
+             s -> {
+
+                 // the owner must find the other items, last to first
+                 boolean complete = true;
+                 for (int i = BEFORE_GROW + 3; i >= 3; i--) {
+
+                     Integer item = s.deque.removeLast();
+                     complete &= item != null && item == i;
+                 }
+                 s.r3 = complete ? "complete" : "lost";
+                 s.r4 = s.deque.removeLast();
+             },
+             Set.of("1 2 complete null"));
+
+        exactlyOnce(thieves, items);
+
+        if (failed) {
+
+            System.exit(1);
+        }
+    }
+}